@@ -0,0 +1,402 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-lived local analysis service. Searches run on a bounded pool of engines sharing one
+ * evaluation cache; identical requests in flight share one search, and finished searches are kept
+ * in a small result cache. Requests are identical when they ask for the same position, depth and
+ * line count, whatever the FEN's move counters say. A search is cancelled once every client
+ * waiting for it has disconnected, which is noticed when its next line fails to send. When more
+ * than {@code queue} searches are waiting, new ones are refused with 503.
+ *
+ * <p>{@code GET /analyze?fen=<fen>&depth=<n>} streams one JSON line per completed depth, {@code
+ * {"depth":2,"move":"Nf3","score":0.25,"nodes":812}}, followed by a {@code "done"} line; mate
+ * scores are {@code "+M"} or {@code "-M"}, from the side to move. With {@code multipv=<n>} each
+ * depth line instead carries a {@code "lines"} array of the best moves with their variations.
+ * {@code GET /stats} reports the service counters. The server only listens on the loopback
+ * interface.
+ *
+ * <pre>
+ *   AnalysisServer [port] [threads] [queue]
+ * </pre>
+ */
+public final class AnalysisServer {
+  static final int MAX_DEPTH = 6;
+  static final int MAX_PV_LINES = 8;
+  static final int RESULT_CACHE_SIZE = 4096;
+
+  /**
+   * Lines produced by one search, replayed to every request that joins it. The search is
+   * cancelled when the last waiting request leaves before it is done.
+   */
+  static final class Analysis {
+    private final List<String> lines = new ArrayList<>();
+    private boolean done;
+    private boolean cancelled;
+    private int waiters;
+    private Future<?> task;
+
+    /** Registers a waiter; false if the search was already cancelled and cannot be joined. */
+    synchronized boolean join() {
+      if (cancelled) return false;
+      waiters++;
+      return true;
+    }
+
+    /** Unregisters a waiter and returns true if that cancelled the search. */
+    synchronized boolean leave() {
+      if (--waiters > 0 || done || task == null) return false;
+      cancelled = true;
+      task.cancel(true);
+      return true;
+    }
+
+    synchronized void setTask(Future<?> task) {
+      this.task = task;
+    }
+
+    synchronized void add(String line) {
+      lines.add(line);
+      notifyAll();
+    }
+
+    synchronized void finish(String line) {
+      lines.add(line);
+      done = true;
+      notifyAll();
+    }
+
+    /** Writes every line, blocking until the search produces more, until it is finished. */
+    void streamTo(OutputStream out) throws IOException, InterruptedException {
+      int next = 0;
+      while (true) {
+        String line;
+        boolean last;
+        synchronized (this) {
+          while (next == lines.size() && !done) wait();
+          line = lines.get(next++);
+          last = done && next == lines.size();
+        }
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+        out.flush();
+        if (last) return;
+      }
+    }
+  }
+
+  private final HttpServer server;
+  private final ThreadPoolExecutor searchPool;
+  private final EvalCache evalCache = new EvalCache(1 << 20);
+  private final TranspositionTable table = TranspositionTable.startup();
+  private final ThreadLocal<ChessAI> engines;
+  private final Map<String, Analysis> inFlight = new ConcurrentHashMap<>();
+  private final Map<String, Analysis> results =
+      new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Analysis> eldest) {
+          return size() > RESULT_CACHE_SIZE;
+        }
+      };
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder searches = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder cancelled = new LongAdder();
+
+  public AnalysisServer(int port, int threads, int queueLimit) throws IOException {
+    NnueNetwork network = NnueNetwork.fromSystemProperty();
+    EvalWeights weights = EvalWeights.startup();
+    SearchParams searchParams = SearchParams.startup();
+    engines =
+        ThreadLocal.withInitial(
+            () -> new ChessAI(evalCache, network, weights, searchParams, table));
+    searchPool =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueLimit),
+            new ThreadPoolExecutor.AbortPolicy());
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/analyze", this::handleAnalyze);
+    server.createContext("/stats", this::handleStats);
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+    searchPool.shutdownNow();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  private void handleAnalyze(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      requests.increment();
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        sendText(exchange, 405, "Only GET is supported");
+        return;
+      }
+      Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+      Board board;
+      int depth;
+      int multiPv;
+      try {
+        board = Board.fromFen(params.getOrDefault("fen", ""));
+        depth = Integer.parseInt(params.getOrDefault("depth", "3"));
+        multiPv = Integer.parseInt(params.getOrDefault("multipv", "1"));
+      } catch (IllegalArgumentException ex) {
+        sendText(exchange, 400, "Bad request: " + ex.getMessage());
+        return;
+      }
+      if (depth < 1 || depth > MAX_DEPTH) {
+        sendText(exchange, 400, "depth must be between 1 and " + MAX_DEPTH);
+        return;
+      }
+      if (multiPv < 1 || multiPv > MAX_PV_LINES) {
+        sendText(exchange, 400, "multipv must be between 1 and " + MAX_PV_LINES);
+        return;
+      }
+
+      String key = positionKey(board) + "|" + depth + "|" + multiPv;
+      Analysis analysis;
+      try {
+        analysis = analysisFor(key, board, depth, multiPv);
+      } catch (RejectedExecutionException ex) {
+        rejected.increment();
+        sendText(exchange, 503, "Analysis queue is full, try again later");
+        return;
+      }
+      try {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        analysis.streamTo(exchange.getResponseBody());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } finally {
+        // a client that went away frees its search if nobody else is waiting for it
+        if (analysis.leave()) {
+          inFlight.remove(key, analysis);
+          cancelled.increment();
+        }
+      }
+    }
+  }
+
+  /**
+   * The first four FEN fields: placement, side to move, castling and en passant. The move
+   * counters are left out so the same position reached on another move shares one result.
+   */
+  static String positionKey(Board board) {
+    String fen = board.toFen();
+    int end = 0;
+    for (int field = 0; field < 4; field++) end = fen.indexOf(' ', end) + 1;
+    return fen.substring(0, end - 1);
+  }
+
+  /** Returns a joined analysis for {@code key}: cached, already running, or newly queued. */
+  private Analysis analysisFor(String key, Board board, int depth, int multiPv) {
+    synchronized (results) {
+      Analysis cached = results.get(key);
+      if (cached != null && cached.join()) {
+        cacheHits.increment();
+        return cached;
+      }
+    }
+    boolean[] created = new boolean[1];
+    Analysis analysis =
+        inFlight.compute(
+            key,
+            (k, running) -> {
+              if (running != null && running.join()) return running;
+              Analysis fresh = new Analysis();
+              fresh.join();
+              fresh.setTask(searchPool.submit(() -> search(k, board, depth, multiPv, fresh)));
+              created[0] = true;
+              return fresh;
+            });
+    if (created[0]) {
+      searches.increment();
+    } else {
+      coalesced.increment();
+    }
+    return analysis;
+  }
+
+  private void search(String key, Board board, int depth, int multiPv, Analysis analysis) {
+    ChessAI ai = engines.get();
+    PlayerColor color = board.sideToMove();
+    long start = System.nanoTime();
+    try {
+      Move best;
+      if (multiPv > 1) {
+        List<ChessAI.PvLine> lines =
+            ai.analyzeMultiPv(
+                board.copy(),
+                color,
+                depth,
+                multiPv,
+                (d, pvLines, nodes) -> analysis.add(formatLines(board, d, pvLines, nodes)));
+        best = lines.isEmpty() ? null : lines.getFirst().move;
+      } else {
+        best =
+            ai.analyze(
+                board.copy(),
+                color,
+                depth,
+                (d, move, score, nodes) ->
+                    analysis.add(
+                        "{\"depth\":"
+                            + d
+                            + ",\"move\":\""
+                            + San.format(board, move)
+                            + "\",\"score\":"
+                            + formatScore(score)
+                            + ",\"nodes\":"
+                            + nodes
+                            + "}"));
+      }
+      if (Thread.interrupted()) {
+        // cancelled because every client left; the partial result is not worth caching
+        analysis.finish("{\"done\":true,\"error\":\"cancelled\"}");
+        return;
+      }
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      analysis.finish(
+          "{\"done\":true,\"bestmove\":"
+              + (best == null ? "null" : "\"" + San.format(board, best) + "\"")
+              + ",\"millis\":"
+              + millis
+              + "}");
+      synchronized (results) {
+        results.put(key, analysis);
+      }
+    } catch (RuntimeException ex) {
+      analysis.finish("{\"done\":true,\"error\":\"" + ex.getClass().getSimpleName() + "\"}");
+    } finally {
+      inFlight.remove(key, analysis);
+    }
+  }
+
+  private void handleStats(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      int cached;
+      synchronized (results) {
+        cached = results.size();
+      }
+      String json =
+          String.format(
+              Locale.ROOT,
+              "{\"requests\":%d,\"searches\":%d,\"coalesced\":%d,\"cacheHits\":%d,"
+                  + "\"rejected\":%d,\"cancelled\":%d,\"active\":%d,\"queued\":%d,"
+                  + "\"cachedResults\":%d,\"evalCacheHitRate\":%.3f,\"transpositionHitRate\":%.3f}",
+              requests.sum(),
+              searches.sum(),
+              coalesced.sum(),
+              cacheHits.sum(),
+              rejected.sum(),
+              cancelled.sum(),
+              searchPool.getActiveCount(),
+              searchPool.getQueue().size(),
+              cached,
+              evalCache.hitRate(),
+              table == null ? 0.0 : table.hitRate());
+      byte[] body = json.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+    }
+  }
+
+  private static String formatLines(
+      Board board, int depth, List<ChessAI.PvLine> lines, long nodes) {
+    StringBuilder json = new StringBuilder("{\"depth\":").append(depth).append(",\"lines\":[");
+    for (int i = 0; i < lines.size(); i++) {
+      ChessAI.PvLine line = lines.get(i);
+      if (i > 0) json.append(',');
+      json.append("{\"move\":\"").append(San.format(board, line.move));
+      json.append("\",\"score\":").append(formatScore(line.score)).append(",\"pv\":\"");
+      Board position = board.copy();
+      for (int ply = 0; ply < line.pv.size(); ply++) {
+        Move move = line.pv.get(ply);
+        if (ply > 0) json.append(' ');
+        San.appendTo(json, position, move);
+        position.applyMove(move);
+      }
+      json.append("\"}");
+    }
+    return json.append("],\"nodes\":").append(nodes).append('}').toString();
+  }
+
+  private static String formatScore(double score) {
+    if (Double.isInfinite(score)) return score > 0 ? "\"+M\"" : "\"-M\"";
+    return String.format(Locale.ROOT, "%.2f", score);
+  }
+
+  private static void sendText(HttpExchange exchange, int status, String message)
+      throws IOException {
+    byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> params = new HashMap<>();
+    if (rawQuery == null) return params;
+    for (String pair : rawQuery.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq <= 0) continue;
+      params.put(
+          URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+          URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+    }
+    return params;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8088;
+    int threads =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    int queue = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+    AnalysisServer server = new AnalysisServer(port, threads, queue);
+    server.start();
+    System.out.println(
+        "Analysis service on http://localhost:"
+            + server.port()
+            + "/analyze ("
+            + threads
+            + " search threads, queue limit "
+            + queue
+            + ")");
+  }
+}
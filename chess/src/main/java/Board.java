@@ -1,8 +1,51 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 
 public class Board {
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long BLACK_TO_MOVE_KEY;
+    private static final long[] NO_HISTORY = new long[0];
+    private static final long KINGS = materialKey("Kk") * 15;
+    private static final long[] LONE_MINORS = {
+        materialKey("B"), materialKey("N"), materialKey("b"), materialKey("n")
+    };
+    /** Piece values in pawns for exchange evaluation, indexed by {@link PieceType} ordinal. */
+    private static final int[] EXCHANGE_VALUES = {100, 9, 5, 3, 3, 1};
+    private static final int[][] KNIGHT_STEPS = {
+        {2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
+    };
+    /** Rook directions first, then bishop directions. */
+    private static final int[][] RAYS = {
+        {1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
+    };
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EEDC0FFEEL);
+        for (long[] keys : PIECE_KEYS) {
+            for (int sq = 0; sq < 64; sq++) {
+                keys[sq] = random.nextLong();
+            }
+        }
+        for (int i = 1; i < CASTLING_KEYS.length; i++) {
+            CASTLING_KEYS[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+    }
+
     private final Piece[][] grid;
+    private long hash;
+    private long material;
+    private int lightSquareBishops;
+    private LegalMoveIndex legalIndex;
+    private long[] history = NO_HISTORY;
+    private int historySize;
+    private int historyStart;
+    private int halfmoveClock;
+    private PlayerColor sideToMove = PlayerColor.WHITE;
+    private int fullmoveNumber = 1;
     private boolean whiteKingMoved;
     private boolean blackKingMoved;
     private boolean whiteKingsideRookMoved;
@@ -15,15 +58,14 @@ public class Board {
         init();
     }
 
-    private Board(Board other) {
-        this.grid = new Piece[8][8];
+    private Board(Piece[][] grid) {
+        this.grid = grid;
+    }
+
+    private Board(Board other, boolean withHistory) {
+        this.grid = new Piece[8][];
         for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece piece = other.grid[r][c];
-                if (piece != null) {
-                    this.grid[r][c] = new Piece(piece.getType(), piece.getColor());
-                }
-            }
+            this.grid[r] = other.grid[r].clone();
         }
         this.whiteKingMoved = other.whiteKingMoved;
         this.blackKingMoved = other.blackKingMoved;
@@ -31,10 +73,22 @@ public class Board {
         this.whiteQueensideRookMoved = other.whiteQueensideRookMoved;
         this.blackKingsideRookMoved = other.blackKingsideRookMoved;
         this.blackQueensideRookMoved = other.blackQueensideRookMoved;
+        this.hash = other.hash;
+        this.material = other.material;
+        this.lightSquareBishops = other.lightSquareBishops;
+        this.legalIndex = other.legalIndex;
+        this.halfmoveClock = other.halfmoveClock;
+        this.sideToMove = other.sideToMove;
+        this.fullmoveNumber = other.fullmoveNumber;
+        if (withHistory && other.historySize > other.historyStart) {
+            this.history =
+                    Arrays.copyOfRange(other.history, other.historyStart, other.historySize + 8);
+            this.historySize = other.historySize - other.historyStart;
+        }
     }
 
     public Board copy() {
-        return new Board(this);
+        return new Board(this, true);
     }
 
     public void init() {
@@ -43,30 +97,221 @@ public class Board {
                 grid[r][c] = null;
             }
         }
-        for (int c = 0; c < 8; c++) grid[6][c] = new Piece(PieceType.PAWN, PlayerColor.WHITE);
-        for (int c = 0; c < 8; c++) grid[1][c] = new Piece(PieceType.PAWN, PlayerColor.BLACK);
-        grid[7][0] = new Piece(PieceType.ROOK, PlayerColor.WHITE);
-        grid[7][7] = new Piece(PieceType.ROOK, PlayerColor.WHITE);
-        grid[0][0] = new Piece(PieceType.ROOK, PlayerColor.BLACK);
-        grid[0][7] = new Piece(PieceType.ROOK, PlayerColor.BLACK);
-        grid[7][1] = new Piece(PieceType.KNIGHT, PlayerColor.WHITE);
-        grid[7][6] = new Piece(PieceType.KNIGHT, PlayerColor.WHITE);
-        grid[0][1] = new Piece(PieceType.KNIGHT, PlayerColor.BLACK);
-        grid[0][6] = new Piece(PieceType.KNIGHT, PlayerColor.BLACK);
-        grid[7][2] = new Piece(PieceType.BISHOP, PlayerColor.WHITE);
-        grid[7][5] = new Piece(PieceType.BISHOP, PlayerColor.WHITE);
-        grid[0][2] = new Piece(PieceType.BISHOP, PlayerColor.BLACK);
-        grid[0][5] = new Piece(PieceType.BISHOP, PlayerColor.BLACK);
-        grid[7][3] = new Piece(PieceType.QUEEN, PlayerColor.WHITE);
-        grid[0][3] = new Piece(PieceType.QUEEN, PlayerColor.BLACK);
-        grid[7][4] = new Piece(PieceType.KING, PlayerColor.WHITE);
-        grid[0][4] = new Piece(PieceType.KING, PlayerColor.BLACK);
+        for (int c = 0; c < 8; c++) grid[6][c] = Piece.of(PieceType.PAWN, PlayerColor.WHITE);
+        for (int c = 0; c < 8; c++) grid[1][c] = Piece.of(PieceType.PAWN, PlayerColor.BLACK);
+        grid[7][0] = Piece.of(PieceType.ROOK, PlayerColor.WHITE);
+        grid[7][7] = Piece.of(PieceType.ROOK, PlayerColor.WHITE);
+        grid[0][0] = Piece.of(PieceType.ROOK, PlayerColor.BLACK);
+        grid[0][7] = Piece.of(PieceType.ROOK, PlayerColor.BLACK);
+        grid[7][1] = Piece.of(PieceType.KNIGHT, PlayerColor.WHITE);
+        grid[7][6] = Piece.of(PieceType.KNIGHT, PlayerColor.WHITE);
+        grid[0][1] = Piece.of(PieceType.KNIGHT, PlayerColor.BLACK);
+        grid[0][6] = Piece.of(PieceType.KNIGHT, PlayerColor.BLACK);
+        grid[7][2] = Piece.of(PieceType.BISHOP, PlayerColor.WHITE);
+        grid[7][5] = Piece.of(PieceType.BISHOP, PlayerColor.WHITE);
+        grid[0][2] = Piece.of(PieceType.BISHOP, PlayerColor.BLACK);
+        grid[0][5] = Piece.of(PieceType.BISHOP, PlayerColor.BLACK);
+        grid[7][3] = Piece.of(PieceType.QUEEN, PlayerColor.WHITE);
+        grid[0][3] = Piece.of(PieceType.QUEEN, PlayerColor.BLACK);
+        grid[7][4] = Piece.of(PieceType.KING, PlayerColor.WHITE);
+        grid[0][4] = Piece.of(PieceType.KING, PlayerColor.BLACK);
         whiteKingMoved = false;
         blackKingMoved = false;
         whiteKingsideRookMoved = false;
         whiteQueensideRookMoved = false;
         blackKingsideRookMoved = false;
         blackQueensideRookMoved = false;
+        sideToMove = PlayerColor.WHITE;
+        fullmoveNumber = 1;
+        hash = computeHash();
+        computeMaterial();
+        legalIndex = null;
+        historySize = 0;
+        historyStart = 0;
+        halfmoveClock = 0;
+    }
+
+    public void clear() {
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                grid[r][c] = null;
+            }
+        }
+        material = 0;
+        lightSquareBishops = 0;
+        sideToMove = PlayerColor.WHITE;
+        fullmoveNumber = 1;
+        setCastlingRights(0);
+        historySize = 0;
+        historyStart = 0;
+        halfmoveClock = 0;
+    }
+
+    public void place(int r, int c, Piece piece) {
+        Piece old = grid[r][c];
+        if (old != null) {
+            hash ^= pieceKey(old, r, c);
+            countMaterial(old, r, c, -1);
+        }
+        grid[r][c] = piece;
+        if (piece != null) {
+            hash ^= pieceKey(piece, r, c);
+            countMaterial(piece, r, c, 1);
+        }
+        legalIndex = null;
+    }
+
+    public void setCastlingRights(int rights) {
+        whiteKingMoved = (rights & 3) == 0;
+        whiteKingsideRookMoved = (rights & 1) == 0;
+        whiteQueensideRookMoved = (rights & 2) == 0;
+        blackKingMoved = (rights & 12) == 0;
+        blackKingsideRookMoved = (rights & 4) == 0;
+        blackQueensideRookMoved = (rights & 8) == 0;
+        hash = computeHash();
+        legalIndex = null;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    public PlayerColor sideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(PlayerColor color) {
+        if (color != sideToMove) {
+            sideToMove = color;
+            hash ^= BLACK_TO_MOVE_KEY;
+            legalIndex = null;
+        }
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Plies back to the most recent earlier occurrence of this position with the same side to move,
+     * or 0 if it has not occurred since the last capture or pawn move.
+     */
+    public int repetitionDistance() {
+        for (int i = historySize - 2; i >= historyStart; i -= 2) {
+            if (history[i] == hash) {
+                return historySize - i;
+            }
+        }
+        return 0;
+    }
+
+    public int repetitionCount() {
+        int count = 0;
+        for (int i = historySize - 2; i >= historyStart; i -= 2) {
+            if (history[i] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isThreefoldRepetition() {
+        return repetitionCount() >= 2;
+    }
+
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= 100;
+    }
+
+    private long computeHash() {
+        long h = CASTLING_KEYS[castlingRights()];
+        if (sideToMove == PlayerColor.BLACK) h ^= BLACK_TO_MOVE_KEY;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece piece = grid[r][c];
+                if (piece != null) {
+                    h ^= pieceKey(piece, r, c);
+                }
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Piece counts packed four bits per color and type, in {@link #pieceKey} order, so two boards
+     * have the same material exactly when their keys are equal.
+     */
+    public long materialKey() {
+        return material;
+    }
+
+    public int count(PlayerColor color, PieceType type) {
+        return (int) (material >>> materialShift(color, type)) & 15;
+    }
+
+    /** Bishops of the given color standing on light squares; they stay on that color. */
+    public int lightSquareBishops(PlayerColor color) {
+        return (lightSquareBishops >>> (8 * color.ordinal())) & 255;
+    }
+
+    /** The material key of a board holding the given pieces, e.g. {@code "KBNk"}. */
+    public static long materialKey(String symbols) {
+        long key = 0;
+        for (int i = 0; i < symbols.length(); i++) {
+            Piece piece = Piece.fromSymbol(symbols.charAt(i));
+            if (piece == null) throw new IllegalArgumentException("Bad piece symbol in " + symbols);
+            key += 1L << materialShift(piece.getColor(), piece.getType());
+        }
+        return key;
+    }
+
+    private static int materialShift(PlayerColor color, PieceType type) {
+        return 4 * (color.ordinal() * 6 + type.ordinal());
+    }
+
+    private void countMaterial(Piece piece, int r, int c, int delta) {
+        material += (long) delta << materialShift(piece.getColor(), piece.getType());
+        if (piece.getType() == PieceType.BISHOP && (r + c) % 2 == 0) {
+            lightSquareBishops += delta << (8 * piece.getColor().ordinal());
+        }
+    }
+
+    private void computeMaterial() {
+        material = 0;
+        lightSquareBishops = 0;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                Piece piece = grid[r][c];
+                if (piece != null) {
+                    countMaterial(piece, r, c, 1);
+                }
+            }
+        }
+    }
+
+    private static long pieceKey(Piece piece, int r, int c) {
+        return PIECE_KEYS[piece.getColor().ordinal() * 6 + piece.getType().ordinal()][r * 8 + c];
+    }
+
+    public int castlingRights() {
+        int rights = 0;
+        if (!whiteKingMoved && !whiteKingsideRookMoved) rights |= 1;
+        if (!whiteKingMoved && !whiteQueensideRookMoved) rights |= 2;
+        if (!blackKingMoved && !blackKingsideRookMoved) rights |= 4;
+        if (!blackKingMoved && !blackQueensideRookMoved) rights |= 8;
+        return rights;
     }
 
     public boolean inBounds(int r, int c) {
@@ -78,9 +323,115 @@ public class Board {
         return grid[r][c];
     }
 
+    /** What {@link #unmakeMove} needs to take a move back, in place of a copy of the board. */
+    public static final class Undo {
+        final Move move;
+        final Piece moved;
+        final Piece captured;
+        final long hash;
+        final long material;
+        final int lightSquareBishops;
+        final int movedFlags;
+        final int halfmoveClock;
+        final int fullmoveNumber;
+        final PlayerColor sideToMove;
+        final int historySize;
+        final int historyStart;
+
+        private Undo(Board board, Move move) {
+            this.move = move;
+            this.moved = board.grid[move.fr][move.fc];
+            this.captured = board.grid[move.tr][move.tc];
+            this.hash = board.hash;
+            this.material = board.material;
+            this.lightSquareBishops = board.lightSquareBishops;
+            this.movedFlags = board.movedFlags();
+            this.halfmoveClock = board.halfmoveClock;
+            this.fullmoveNumber = board.fullmoveNumber;
+            this.sideToMove = board.sideToMove;
+            this.historySize = board.historySize;
+            this.historyStart = board.historyStart;
+        }
+
+        public Move move() {
+            return move;
+        }
+    }
+
+    /** Applies the move and returns the record that {@link #unmakeMove} takes it back with. */
+    public Undo makeMove(Move m) {
+        Undo undo = new Undo(this, m);
+        applyMove(m);
+        return undo;
+    }
+
+    /** Takes back the most recent move made with {@link #makeMove} that is not yet undone. */
+    public void unmakeMove(Undo undo) {
+        Move m = undo.move;
+        grid[m.fr][m.fc] = undo.moved;
+        grid[m.tr][m.tc] = undo.captured;
+        boolean king = undo.moved != null && undo.moved.getType() == PieceType.KING;
+        if (king && Math.abs(m.tc - m.fc) == 2) {
+            int row = m.tr;
+            if (m.tc > m.fc) {
+                grid[row][7] = grid[row][5];
+                grid[row][5] = null;
+            } else {
+                grid[row][0] = grid[row][3];
+                grid[row][3] = null;
+            }
+        }
+        hash = undo.hash;
+        material = undo.material;
+        lightSquareBishops = undo.lightSquareBishops;
+        setMovedFlags(undo.movedFlags);
+        halfmoveClock = undo.halfmoveClock;
+        fullmoveNumber = undo.fullmoveNumber;
+        sideToMove = undo.sideToMove;
+        historySize = undo.historySize;
+        historyStart = undo.historyStart;
+        legalIndex = null;
+    }
+
+    private int movedFlags() {
+        return (whiteKingMoved ? 1 : 0)
+                | (blackKingMoved ? 2 : 0)
+                | (whiteKingsideRookMoved ? 4 : 0)
+                | (whiteQueensideRookMoved ? 8 : 0)
+                | (blackKingsideRookMoved ? 16 : 0)
+                | (blackQueensideRookMoved ? 32 : 0);
+    }
+
+    private void setMovedFlags(int flags) {
+        whiteKingMoved = (flags & 1) != 0;
+        blackKingMoved = (flags & 2) != 0;
+        whiteKingsideRookMoved = (flags & 4) != 0;
+        whiteQueensideRookMoved = (flags & 8) != 0;
+        blackKingsideRookMoved = (flags & 16) != 0;
+        blackQueensideRookMoved = (flags & 32) != 0;
+    }
+
     public void applyMove(Move m) {
         Piece moving = grid[m.fr][m.fc];
         Piece captured = grid[m.tr][m.tc];
+        legalIndex = null;
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, Math.max(16, historySize * 2));
+        }
+        history[historySize++] = hash;
+        if (captured != null || (moving != null && moving.getType() == PieceType.PAWN)) {
+            // earlier positions can no longer repeat, but stay in the array for unmakeMove
+            halfmoveClock = 0;
+            historyStart = historySize;
+        } else {
+            halfmoveClock++;
+        }
+        hash ^= CASTLING_KEYS[castlingRights()];
+        if (moving != null) hash ^= pieceKey(moving, m.fr, m.fc);
+        if (captured != null) {
+            hash ^= pieceKey(captured, m.tr, m.tc);
+            countMaterial(captured, m.tr, m.tc, -1);
+        }
         if (captured != null && captured.getType() == PieceType.ROOK) {
             markRookMovedOrGone(captured.getColor(), m.tr, m.tc);
         }
@@ -98,11 +449,13 @@ public class Board {
                         Piece rook = grid[row][7];
                         grid[row][7] = null;
                         grid[row][5] = rook;
+                        if (rook != null) hash ^= pieceKey(rook, row, 7) ^ pieceKey(rook, row, 5);
                         markRookMovedOrGone(moving.getColor(), row, 7);
                     } else {
                         Piece rook = grid[row][0];
                         grid[row][0] = null;
                         grid[row][3] = rook;
+                        if (rook != null) hash ^= pieceKey(rook, row, 0) ^ pieceKey(rook, row, 3);
                         markRookMovedOrGone(moving.getColor(), row, 0);
                     }
                 }
@@ -113,10 +466,24 @@ public class Board {
         grid[m.tr][m.tc] = moving;
         if (moving != null && moving.getType() == PieceType.PAWN) {
             if (moving.getColor() == PlayerColor.WHITE && m.tr == 0) {
-                grid[m.tr][m.tc] = new Piece(PieceType.QUEEN, PlayerColor.WHITE);
+                grid[m.tr][m.tc] = Piece.of(PieceType.QUEEN, PlayerColor.WHITE);
             }
             if (moving.getColor() == PlayerColor.BLACK && m.tr == 7) {
-                grid[m.tr][m.tc] = new Piece(PieceType.QUEEN, PlayerColor.BLACK);
+                grid[m.tr][m.tc] = Piece.of(PieceType.QUEEN, PlayerColor.BLACK);
+            }
+        }
+        if (grid[m.tr][m.tc] != moving) {
+            countMaterial(moving, m.tr, m.tc, -1);
+            countMaterial(grid[m.tr][m.tc], m.tr, m.tc, 1);
+        }
+        if (grid[m.tr][m.tc] != null) hash ^= pieceKey(grid[m.tr][m.tc], m.tr, m.tc);
+        hash ^= CASTLING_KEYS[castlingRights()];
+        if (moving != null) {
+            if (moving.getColor() == PlayerColor.BLACK) fullmoveNumber++;
+            PlayerColor next = moving.getColor().opponent();
+            if (next != sideToMove) {
+                sideToMove = next;
+                hash ^= BLACK_TO_MOVE_KEY;
             }
         }
     }
@@ -175,6 +542,112 @@ public class Board {
         return true;
     }
 
+    public static int exchangeValue(PieceType type) {
+        return EXCHANGE_VALUES[type.ordinal()];
+    }
+
+    /**
+     * Static exchange evaluation of {@code move}: the material its side wins, in pawns, if both
+     * sides then keep recapturing on the target square with their least valuable piece, each free
+     * to stop when going on would lose more. A capturer leaving a line uncovers the slider behind
+     * it, so batteries and x-ray attacks are counted. Pins are ignored. Positive means the capture
+     * wins material, zero an even trade and negative a loss.
+     */
+    public int staticExchange(Move move) {
+        Piece mover = grid[move.fr][move.fc];
+        Piece target = grid[move.tr][move.tc];
+        long occupied = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (grid[sq / 8][sq % 8] != null) occupied |= 1L << sq;
+        }
+        int[] gain = new int[32];
+        gain[0] = target == null ? 0 : EXCHANGE_VALUES[target.getType().ordinal()];
+        int onSquare = EXCHANGE_VALUES[mover.getType().ordinal()];
+        if (mover.getType() == PieceType.PAWN && (move.tr == 0 || move.tr == 7)) {
+            gain[0] += EXCHANGE_VALUES[PieceType.QUEEN.ordinal()] - onSquare;
+            onSquare = EXCHANGE_VALUES[PieceType.QUEEN.ordinal()];
+        }
+        occupied &= ~(1L << (move.fr * 8 + move.fc));
+        PlayerColor side = mover.getColor().opponent();
+        int depth = 0;
+        while (true) {
+            int from = leastValuableAttacker(move.tr, move.tc, side, occupied);
+            if (from < 0) break;
+            depth++;
+            // what this capture nets its side if the exchange ended with it
+            gain[depth] = onSquare - gain[depth - 1];
+            onSquare = EXCHANGE_VALUES[grid[from / 8][from % 8].getType().ordinal()];
+            occupied &= ~(1L << from);
+            side = side.opponent();
+        }
+        // each side either stops before its capture or makes it, whichever nets more
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    /** Square of {@code side}'s cheapest piece in {@code occupied} attacking (tr, tc), or -1. */
+    private int leastValuableAttacker(int tr, int tc, PlayerColor side, long occupied) {
+        int pr = side == PlayerColor.WHITE ? tr + 1 : tr - 1;
+        for (int dc = -1; dc <= 1; dc += 2) {
+            if (isOwn(pr, tc + dc, side, PieceType.PAWN, occupied)) return pr * 8 + tc + dc;
+        }
+        for (int[] step : KNIGHT_STEPS) {
+            if (isOwn(tr + step[0], tc + step[1], side, PieceType.KNIGHT, occupied)) {
+                return (tr + step[0]) * 8 + tc + step[1];
+            }
+        }
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        for (int i = 0; i < RAYS.length; i++) {
+            int r = tr + RAYS[i][0];
+            int c = tc + RAYS[i][1];
+            while (inBounds(r, c) && (occupied & (1L << (r * 8 + c))) == 0) {
+                r += RAYS[i][0];
+                c += RAYS[i][1];
+            }
+            if (!inBounds(r, c)) continue;
+            Piece piece = grid[r][c];
+            if (piece.getColor() != side) continue;
+            PieceType type = piece.getType();
+            PieceType slider = i < 4 ? PieceType.ROOK : PieceType.BISHOP;
+            boolean slides = type == PieceType.QUEEN || type == slider;
+            boolean adjacent = Math.max(Math.abs(r - tr), Math.abs(c - tc)) == 1;
+            if (!slides && !(type == PieceType.KING && adjacent)) continue;
+            int value = EXCHANGE_VALUES[type.ordinal()];
+            if (value < bestValue) {
+                best = r * 8 + c;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    private boolean isOwn(int r, int c, PlayerColor side, PieceType type, long occupied) {
+        if (!inBounds(r, c) || (occupied & (1L << (r * 8 + c))) == 0) return false;
+        Piece piece = grid[r][c];
+        return piece.getColor() == side && piece.getType() == type;
+    }
+
+    /**
+     * Whether {@link #generatePseudoMoves} would include the move from (fr, fc) to (tr, tc),
+     * answered without building the list. Castling is not a pseudo move.
+     */
+    public boolean isPseudoLegal(int fr, int fc, int tr, int tc) {
+        Piece piece = at(fr, fc);
+        if (piece == null || !inBounds(tr, tc)) return false;
+        Piece target = at(tr, tc);
+        if (target != null && target.getColor() == piece.getColor()) return false;
+        if (piece.getType() != PieceType.PAWN) return canPieceAttack(fr, fc, tr, tc);
+        int dir = piece.getColor() == PlayerColor.WHITE ? -1 : 1;
+        if (tc != fc) return target != null && tr == fr + dir && Math.abs(tc - fc) == 1;
+        if (target != null) return false;
+        int startRow = piece.getColor() == PlayerColor.WHITE ? 6 : 1;
+        return tr == fr + dir || (fr == startRow && tr == fr + 2 * dir && at(fr + dir, fc) == null);
+    }
+
     public List<Move> generatePseudoMoves(int r, int c) {
         List<Move> moves = new ArrayList<>();
         Piece piece = at(r, c);
@@ -267,9 +740,7 @@ public class Board {
                 if (piece == null || piece.getColor() != color) continue;
                 List<Move> pseudos = generatePseudoMoves(r, c);
                 for (Move move : pseudos) {
-                    Board copy = copy();
-                    copy.applyMove(move);
-                    if (!copy.isKingInCheck(color)) {
+                    if (keepsKingSafe(move, color)) {
                         legal.add(move);
                     }
                 }
@@ -279,6 +750,22 @@ public class Board {
         return legal;
     }
 
+    public boolean keepsKingSafe(Move move, PlayerColor color) {
+        Board copy = new Board(this, false);
+        copy.applyMove(move);
+        return !copy.isKingInCheck(color);
+    }
+
+    /** Legal moves of {@code color}, built once per position and shared by copies of it. */
+    public LegalMoveIndex legalMoveIndex(PlayerColor color) {
+        LegalMoveIndex index = legalIndex;
+        if (index == null || index.color() != color) {
+            index = new LegalMoveIndex(color, generateLegalMoves(color));
+            legalIndex = index;
+        }
+        return index;
+    }
+
     private void addCastlingMoves(PlayerColor color, List<Move> legal) {
         int row = color == PlayerColor.WHITE ? 7 : 0;
         int kingCol = 4;
@@ -342,6 +829,107 @@ public class Board {
         return isAttacked(kr, kc, color.opponent());
     }
 
+    /** Parses a FEN or the first four fields of an EPD record. En-passant squares are ignored. */
+    public static Board fromFen(CharSequence fen) {
+        Board board = new Board(new Piece[8][8]);
+        board.clear();
+        int i = skipSpaces(fen, 0);
+        int r = 0;
+        int c = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            char ch = fen.charAt(i);
+            if (ch == '/') {
+                if (c != 8) throw badFen(fen);
+                r++;
+                c = 0;
+            } else if (ch >= '1' && ch <= '8') {
+                c += ch - '0';
+            } else {
+                Piece piece = Piece.fromSymbol(ch);
+                if (piece == null || r > 7 || c > 7) throw badFen(fen);
+                board.place(r, c++, piece);
+            }
+            if (c > 8) throw badFen(fen);
+        }
+        if (r != 7 || c != 8) throw badFen(fen);
+        i = skipSpaces(fen, i);
+        if (i >= fen.length()) throw badFen(fen);
+        char side = fen.charAt(i++);
+        if (side != 'w' && side != 'b') throw badFen(fen);
+        i = skipSpaces(fen, i);
+        int rights = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            switch (fen.charAt(i)) {
+                case 'K' -> rights |= 1;
+                case 'Q' -> rights |= 2;
+                case 'k' -> rights |= 4;
+                case 'q' -> rights |= 8;
+                case '-' -> { }
+                default -> throw badFen(fen);
+            }
+        }
+        board.setCastlingRights(rights);
+        board.setSideToMove(side == 'w' ? PlayerColor.WHITE : PlayerColor.BLACK);
+        i = skipSpaces(fen, i);
+        while (i < fen.length() && fen.charAt(i) != ' ') i++;
+        i = skipSpaces(fen, i);
+        int halfmove = 0;
+        while (i < fen.length() && Character.isDigit(fen.charAt(i))) {
+            halfmove = halfmove * 10 + (fen.charAt(i++) - '0');
+        }
+        i = skipSpaces(fen, i);
+        int fullmove = 0;
+        while (i < fen.length() && Character.isDigit(fen.charAt(i))) {
+            fullmove = fullmove * 10 + (fen.charAt(i++) - '0');
+        }
+        board.halfmoveClock = halfmove;
+        board.fullmoveNumber = Math.max(1, fullmove);
+        return board;
+    }
+
+    private static int skipSpaces(CharSequence s, int i) {
+        while (i < s.length() && s.charAt(i) == ' ') i++;
+        return i;
+    }
+
+    private static IllegalArgumentException badFen(CharSequence fen) {
+        return new IllegalArgumentException("Invalid FEN: " + fen);
+    }
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        appendFen(sb);
+        return sb.toString();
+    }
+
+    public void appendFen(StringBuilder sb) {
+        for (int r = 0; r < 8; r++) {
+            int empty = 0;
+            for (int c = 0; c < 8; c++) {
+                Piece piece = grid[r][c];
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                sb.append(piece.symbol());
+            }
+            if (empty > 0) sb.append((char) ('0' + empty));
+            if (r < 7) sb.append('/');
+        }
+        sb.append(sideToMove == PlayerColor.WHITE ? " w " : " b ");
+        int rights = castlingRights();
+        if (rights == 0) sb.append('-');
+        if ((rights & 1) != 0) sb.append('K');
+        if ((rights & 2) != 0) sb.append('Q');
+        if ((rights & 4) != 0) sb.append('k');
+        if ((rights & 8) != 0) sb.append('q');
+        sb.append(" - ").append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
     public void print() {
         System.out.println();
         for (int r = 0; r < 8; r++) {
@@ -356,25 +944,12 @@ public class Board {
         System.out.println();
     }
 
+    /** Bare kings, or kings and a single bishop or knight. */
     public boolean isAutomaticDrawByInsufficientMaterial() {
-        List<Piece> pieces = new ArrayList<>();
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece piece = grid[r][c];
-                if (piece != null) {
-                    pieces.add(piece);
-                }
-            }
-        }
-        if (pieces.size() == 2) {
-            return true;
-        }
-        if (pieces.size() == 3) {
-            for (Piece piece : pieces) {
-                if (piece.getType() == PieceType.BISHOP || piece.getType() == PieceType.KNIGHT) {
-                    return true;
-                }
-            }
+        long pieces = material & ~KINGS;
+        if (pieces == 0) return true;
+        for (long minor : LONE_MINORS) {
+            if (pieces == minor) return true;
         }
         return false;
     }
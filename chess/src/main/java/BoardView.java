@@ -0,0 +1,311 @@
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Custom-painted chess board. Squares and pieces are blitted from images pre-rendered at the
+ * current square size, and {@link #sync} repaints only the squares whose contents changed.
+ */
+public final class BoardView extends JComponent {
+  public interface SquareListener {
+    void squareClicked(int r, int c);
+  }
+
+  public static final int DEFAULT_SQUARE_SIZE = 65;
+
+  private static final int SHADE_BASE = 0;
+  private static final int SHADE_SELECTED = 1;
+  private static final int SHADE_TARGET = 2;
+  private static final int ANIMATION_MILLIS = 160;
+  private static final int FRAME_MILLIS = 15;
+
+  private final Color[][] shadeColors;
+  private final Color gridColor;
+  private final EnumMap<PlayerColor, EnumMap<PieceType, Image>> sprites;
+  private final EnumMap<PlayerColor, EnumMap<PieceType, Image>> scaledSprites =
+      new EnumMap<>(PlayerColor.class);
+  private final Image[][] tiles = new Image[2][3];
+  private int tileSize = -1;
+
+  private final Piece[] shownPieces = new Piece[64];
+  private final int[] shownShades = new int[64];
+
+  /** Pieces sliding in the current animation: the mover, and the rook when castling. */
+  private final Piece[] animPieces = new Piece[2];
+  private final int[] animFroms = new int[2];
+  private final int[] animTos = new int[2];
+  private int animCount;
+  private long animStart;
+  private Rectangle animBounds;
+  private Timer animTimer;
+  private Runnable animDone;
+  private Runnable firstPaint;
+
+  public BoardView(
+      Color light,
+      Color dark,
+      Color selected,
+      Color target,
+      Color gridColor,
+      EnumMap<PlayerColor, EnumMap<PieceType, Image>> sprites) {
+    this.shadeColors =
+        new Color[][] {{light, selected, target}, {dark, selected, target}};
+    this.gridColor = gridColor;
+    this.sprites = sprites;
+    // fills the strip that a non-square size leaves beside or below the squares
+    setBackground(gridColor);
+    setOpaque(true);
+    setPreferredSize(new Dimension(DEFAULT_SQUARE_SIZE * 8, DEFAULT_SQUARE_SIZE * 8));
+  }
+
+  /** Runs {@code action} once, right after the board is painted for the first time. */
+  public void onFirstPaint(Runnable action) {
+    this.firstPaint = action;
+  }
+
+  public void addSquareListener(SquareListener listener) {
+    addMouseListener(
+        new MouseAdapter() {
+          @Override
+          public void mousePressed(MouseEvent e) {
+            int size = squareSize();
+            if (size <= 0 || e.getX() >= size * 8 || e.getY() >= size * 8) {
+              return;
+            }
+            listener.squareClicked(e.getY() / size, e.getX() / size);
+          }
+        });
+  }
+
+  /** Brings the view in line with {@code board}, repainting only squares that differ. */
+  public void sync(Board board, int selR, int selC, long targets) {
+    for (int r = 0; r < 8; r++) {
+      for (int c = 0; c < 8; c++) {
+        int sq = r * 8 + c;
+        Piece piece = board.at(r, c);
+        int shade = SHADE_BASE;
+        if (r == selR && c == selC) {
+          shade = SHADE_SELECTED;
+        } else if ((targets & (1L << sq)) != 0) {
+          shade = SHADE_TARGET;
+        }
+        if (!samePiece(piece, shownPieces[sq]) || shade != shownShades[sq]) {
+          shownPieces[sq] = piece;
+          shownShades[sq] = shade;
+          repaint(squareBounds(sq));
+        }
+      }
+    }
+  }
+
+  /**
+   * Slides the piece now standing on the move's target square from its origin, and the rook too
+   * when the move castles. The view must already be synced to the board after the move; {@code
+   * onDone} runs on the EDT at the end.
+   */
+  public void animate(Move move, Runnable onDone) {
+    finishAnimation();
+    int to = move.tr * 8 + move.tc;
+    Piece piece = shownPieces[to];
+    if (piece == null) {
+      if (onDone != null) onDone.run();
+      return;
+    }
+    addSlide(move.fr * 8 + move.fc, to);
+    if (piece.getType() == PieceType.KING && Math.abs(move.tc - move.fc) == 2) {
+      boolean kingside = move.tc > move.fc;
+      addSlide(move.fr * 8 + (kingside ? 7 : 0), move.fr * 8 + (kingside ? 5 : 3));
+    }
+    animDone = onDone;
+    animStart = System.nanoTime();
+    animBounds = currentAnimationBounds();
+    for (int i = 0; i < animCount; i++) {
+      repaint(squareBounds(animTos[i]));
+    }
+    animTimer = new Timer(FRAME_MILLIS, e -> stepAnimation());
+    animTimer.start();
+  }
+
+  private void addSlide(int from, int to) {
+    if (shownPieces[to] == null) {
+      return;
+    }
+    animPieces[animCount] = shownPieces[to];
+    animFroms[animCount] = from;
+    animTos[animCount] = to;
+    animCount++;
+  }
+
+  public void finishAnimation() {
+    if (animTimer == null) {
+      return;
+    }
+    animTimer.stop();
+    animTimer = null;
+    repaint(animBounds);
+    for (int i = 0; i < animCount; i++) {
+      repaint(squareBounds(animTos[i]));
+      animPieces[i] = null;
+    }
+    animCount = 0;
+    Runnable done = animDone;
+    animDone = null;
+    if (done != null) {
+      done.run();
+    }
+  }
+
+  private void stepAnimation() {
+    Rectangle previous = animBounds;
+    animBounds = currentAnimationBounds();
+    repaint(previous.union(animBounds));
+    if (progress() >= 1.0) {
+      finishAnimation();
+    }
+  }
+
+  private double progress() {
+    return Math.min(1.0, (System.nanoTime() - animStart) / (ANIMATION_MILLIS * 1_000_000.0));
+  }
+
+  /** The area covered by all sliding pieces now. */
+  private Rectangle currentAnimationBounds() {
+    Rectangle bounds = slideBounds(0);
+    for (int i = 1; i < animCount; i++) {
+      bounds = bounds.union(slideBounds(i));
+    }
+    return bounds;
+  }
+
+  private Rectangle slideBounds(int slide) {
+    Rectangle from = squareBounds(animFroms[slide]);
+    Rectangle to = squareBounds(animTos[slide]);
+    double t = progress();
+    double eased = t * t * (3 - 2 * t);
+    int x = (int) Math.round(from.x + (to.x - from.x) * eased);
+    int y = (int) Math.round(from.y + (to.y - from.y) * eased);
+    return new Rectangle(x, y, from.width, from.height);
+  }
+
+  private boolean isSlideTarget(int sq) {
+    for (int i = 0; i < animCount; i++) {
+      if (animTos[i] == sq) return true;
+    }
+    return false;
+  }
+
+  private static boolean samePiece(Piece a, Piece b) {
+    if (a == b) return true;
+    if (a == null || b == null) return false;
+    return a.getType() == b.getType() && a.getColor() == b.getColor();
+  }
+
+  private int squareSize() {
+    return Math.min(getWidth(), getHeight()) / 8;
+  }
+
+  private Rectangle squareBounds(int sq) {
+    int size = squareSize();
+    return new Rectangle((sq % 8) * size, (sq / 8) * size, size, size);
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    int size = squareSize();
+    int extent = size * 8;
+    // opaque, so every pixel is painted: the squares, then whatever the view has beyond them
+    g.setColor(getBackground());
+    g.fillRect(extent, 0, getWidth() - extent, getHeight());
+    g.fillRect(0, extent, extent, getHeight() - extent);
+    if (size <= 0) {
+      return;
+    }
+    ensureCaches(size);
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, getWidth(), getHeight());
+    }
+    int c0 = Math.max(0, clip.x / size);
+    int c1 = Math.min(7, (clip.x + clip.width - 1) / size);
+    int r0 = Math.max(0, clip.y / size);
+    int r1 = Math.min(7, (clip.y + clip.height - 1) / size);
+    for (int r = r0; r <= r1; r++) {
+      for (int c = c0; c <= c1; c++) {
+        int sq = r * 8 + c;
+        int x = c * size;
+        int y = r * size;
+        g.drawImage(tiles[(r + c) % 2][shownShades[sq]], x, y, null);
+        Piece piece = shownPieces[sq];
+        if (piece != null && !isSlideTarget(sq)) {
+          g.drawImage(scaledSprite(piece), x, y, null);
+        }
+      }
+    }
+    for (int i = 0; i < animCount; i++) {
+      Rectangle bounds = slideBounds(i);
+      g.drawImage(scaledSprite(animPieces[i]), bounds.x, bounds.y, null);
+    }
+    if (firstPaint != null) {
+      Runnable action = firstPaint;
+      firstPaint = null;
+      action.run();
+    }
+  }
+
+  private Image scaledSprite(Piece piece) {
+    Map<PieceType, Image> byType = scaledSprites.get(piece.getColor());
+    return byType == null ? null : byType.get(piece.getType());
+  }
+
+  private void ensureCaches(int size) {
+    if (size == tileSize) {
+      return;
+    }
+    tileSize = size;
+    for (int parity = 0; parity < 2; parity++) {
+      for (int shade = 0; shade < 3; shade++) {
+        BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = tile.createGraphics();
+        g2.setColor(shadeColors[parity][shade]);
+        g2.fillRect(0, 0, size, size);
+        g2.setColor(gridColor);
+        g2.drawRect(0, 0, size - 1, size - 1);
+        g2.dispose();
+        tiles[parity][shade] = tile;
+      }
+    }
+    scaledSprites.clear();
+    for (Map.Entry<PlayerColor, EnumMap<PieceType, Image>> byColor : sprites.entrySet()) {
+      EnumMap<PieceType, Image> scaled = new EnumMap<>(PieceType.class);
+      for (Map.Entry<PieceType, Image> entry : byColor.getValue().entrySet()) {
+        scaled.put(entry.getKey(), scaleSprite(entry.getValue(), size));
+      }
+      scaledSprites.put(byColor.getKey(), scaled);
+    }
+  }
+
+  private static Image scaleSprite(Image source, int size) {
+    if (source.getWidth(null) == size && source.getHeight(null) == size) {
+      return source;
+    }
+    BufferedImage canvas = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2 = canvas.createGraphics();
+    g2.setRenderingHint(
+        RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    g2.drawImage(source, 0, 0, size, size, null);
+    g2.dispose();
+    return canvas;
+  }
+}
@@ -1,8 +1,33 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 public class ChessAI {
+  /** Receives the result of each completed iteration of {@link #analyze}. */
+  public interface SearchListener {
+    void depthCompleted(int depth, Move best, double score, long nodes);
+  }
+
+  /** Receives the lines of each completed iteration of {@link #analyzeMultiPv}. */
+  public interface MultiPvListener {
+    void depthCompleted(int depth, List<PvLine> lines, long nodes);
+  }
+
+  /** A root move with its exact score, in pawns for the side to move, and principal variation. */
+  public static final class PvLine {
+    public final Move move;
+    public final double score;
+    public final List<Move> pv;
+
+    PvLine(Move move, double score, List<Move> pv) {
+      this.move = move;
+      this.score = score;
+      this.pv = pv;
+    }
+  }
+
   public enum Difficulty {
     EASY(1, "Easy"),
     MEDIUM(2, "Medium"),
@@ -31,16 +56,199 @@ public class ChessAI {
   }
 
   private static final double KING_VALUE = 1000.0;
-  private static final double QUEEN_VALUE = 9.0;
-  private static final double ROOK_VALUE = 5.0;
-  private static final double BISHOP_VALUE = 3.25;
-  private static final double KNIGHT_VALUE = 3.0;
-  private static final double PAWN_VALUE = 1.0;
+  private static final int MAX_DEPTH = 64;
+  private static final int MAX_QUIESCENCE_PLIES = 8;
 
   private final Random random = new Random();
+  private final EvalCache evalCache;
+  private final NnueNetwork network;
+  private final EvalWeights weights;
+  private final SearchParams params;
+  private final TranspositionTable table;
+  private long nodes;
+  private long nodeLimit = Long.MAX_VALUE;
+  private boolean aborted;
+  private double lastScore;
+  private List<Move> lastPv = List.of();
+  private Move[][] pvTable = new Move[0][];
+  private int[] pvLength = new int[0];
+
+  public ChessAI() {
+    this(new EvalCache(1 << 16), NnueNetwork.fromSystemProperty());
+  }
+
+  public ChessAI(EvalCache evalCache) {
+    this(evalCache, null);
+  }
+
+  public ChessAI(EvalCache evalCache, NnueNetwork network) {
+    this(evalCache, network, EvalWeights.startup());
+  }
+
+  public ChessAI(EvalCache evalCache, NnueNetwork network, EvalWeights weights) {
+    this(evalCache, network, weights, SearchParams.startup());
+  }
+
+  public ChessAI(
+      EvalCache evalCache, NnueNetwork network, EvalWeights weights, SearchParams params) {
+    this(evalCache, network, weights, params, TranspositionTable.startup());
+  }
+
+  /** {@code table} may be null to search without a transposition table. */
+  public ChessAI(
+      EvalCache evalCache,
+      NnueNetwork network,
+      EvalWeights weights,
+      SearchParams params,
+      TranspositionTable table) {
+    this.evalCache = evalCache;
+    this.network = network;
+    this.weights = weights;
+    this.params = params;
+    this.table = table;
+  }
+
+  public EvalCache evalCache() {
+    return evalCache;
+  }
+
+  /** Positions visited by the most recent {@code chooseMove} call. */
+  public long nodes() {
+    return nodes;
+  }
+
+  /** Score of the move returned by the most recent search, in pawns for the side to move. */
+  public double lastScore() {
+    return lastScore;
+  }
+
+  /**
+   * The expected line of play from the move returned by the most recent {@code chooseMove} or
+   * {@code analyze} call, starting with that move; empty if there was none.
+   */
+  public List<Move> principalVariation() {
+    return lastPv;
+  }
 
   public Move chooseMove(Board board, PlayerColor aiPlayerColor, Difficulty difficulty) {
-    List<Move> legal = board.generateLegalMoves(aiPlayerColor);
+    return chooseMove(board, aiPlayerColor, difficulty.searchDepth());
+  }
+
+  /**
+   * Searches depth 1, 2, ... up to {@code maxDepth}, reporting each completed depth. Stops early
+   * on a forced mate or, within a few thousand nodes, when the thread is interrupted, and returns
+   * the best move of the last completed depth.
+   */
+  public Move analyze(Board board, PlayerColor color, int maxDepth, SearchListener listener) {
+    Move best = null;
+    double bestScore = 0.0;
+    List<Move> bestPv = List.of();
+    long total = 0;
+    for (int depth = 1; depth <= maxDepth && !Thread.currentThread().isInterrupted(); depth++) {
+      Move move = chooseMove(board, color, depth);
+      total += nodes;
+      if (move == null || aborted) break;
+      best = move;
+      bestScore = lastScore;
+      bestPv = lastPv;
+      listener.depthCompleted(depth, move, lastScore, total);
+      if (Double.isInfinite(lastScore)) break;
+    }
+    nodes = total;
+    lastScore = bestScore;
+    lastPv = bestPv;
+    return best;
+  }
+
+  /** Returns up to {@code count} best root moves, best first, searched to {@code depth}. */
+  public List<PvLine> searchMultiPv(Board board, PlayerColor color, int depth, int count) {
+    return analyzeMultiPv(board, color, depth, count, null);
+  }
+
+  /**
+   * Multi-PV iterative deepening. Each depth is a single pass over the root moves, ordered by the
+   * previous depth's scores; a move is searched with alpha at the current {@code count}-th best
+   * score, so only moves that enter the top lines get an exact score and variation. An interrupt
+   * stops the search and returns the lines of the last completed depth, which may be empty.
+   */
+  public List<PvLine> analyzeMultiPv(
+      Board board, PlayerColor color, int maxDepth, int count, MultiPvListener listener) {
+    List<Move> order = new ArrayList<>(board.legalMoveIndex(color).moves());
+    List<PvLine> lines = List.of();
+    long total = 0;
+    if (order.isEmpty() || count <= 0) {
+      nodes = 0;
+      return lines;
+    }
+    for (int depth = 1; depth <= maxDepth && !Thread.currentThread().isInterrupted(); depth++) {
+      double[] scores = new double[order.size()];
+      List<PvLine> next = searchRoot(board, color, depth, count, order, scores);
+      total += nodes;
+      if (aborted) break;
+      lines = next;
+      if (listener != null) listener.depthCompleted(depth, lines, total);
+      if (Double.isInfinite(lines.getFirst().score)) break;
+      sortByScore(order, scores);
+    }
+    nodes = total;
+    lastScore = lines.isEmpty() ? 0.0 : lines.getFirst().score;
+    return lines;
+  }
+
+  private List<PvLine> searchRoot(
+      Board board, PlayerColor color, int depth, int count, List<Move> order, double[] scores) {
+    nodes = 0;
+    aborted = false;
+    NnueNetwork.Accumulator[] accumulators = newAccumulatorStack(board, depth);
+    ensurePvTable(depth);
+    List<PvLine> lines = new ArrayList<>(count + 1);
+    for (int i = 0; i < order.size(); i++) {
+      Move move = order.get(i);
+      double floor =
+          lines.size() < count ? Double.NEGATIVE_INFINITY : lines.get(count - 1).score;
+      Board copy = board.copy();
+      copy.applyMove(move);
+      pushAccumulator(accumulators, 0, board, move);
+      double score =
+          alphaBeta(
+              copy,
+              depth - 1,
+              floor,
+              Double.POSITIVE_INFINITY,
+              color.opponent(),
+              color,
+              1,
+              accumulators);
+      if (aborted) break;
+      scores[i] = score;
+      if (lines.size() == count && score <= floor) continue;
+      int at = 0;
+      while (at < lines.size() && lines.get(at).score >= score) at++;
+      lines.add(at, new PvLine(move, score, rootPv(move)));
+      if (lines.size() > count) lines.removeLast();
+    }
+    return lines;
+  }
+
+  private static void sortByScore(List<Move> moves, double[] scores) {
+    Integer[] index = new Integer[moves.size()];
+    for (int i = 0; i < index.length; i++) index[i] = i;
+    Arrays.sort(index, (a, b) -> Double.compare(scores[b], scores[a]));
+    List<Move> sorted = new ArrayList<>(moves.size());
+    for (int i : index) sorted.add(moves.get(i));
+    for (int i = 0; i < index.length; i++) moves.set(i, sorted.get(i));
+  }
+
+  /**
+   * Searches every legal move to {@code depth}. If the thread is interrupted the search stops and
+   * the best move among those already searched is returned.
+   */
+  public Move chooseMove(Board board, PlayerColor aiPlayerColor, int depth) {
+    nodes = 0;
+    aborted = false;
+    lastScore = 0.0;
+    lastPv = List.of();
+    List<Move> legal = new ArrayList<>(board.legalMoveIndex(aiPlayerColor).moves());
     if (legal.isEmpty()) {
       return null;
     }
@@ -48,11 +256,13 @@ public class ChessAI {
 
     double bestScore = Double.NEGATIVE_INFINITY;
     Move bestMove = legal.getFirst();
-    int depth = difficulty.searchDepth();
+    NnueNetwork.Accumulator[] accumulators = newAccumulatorStack(board, depth);
+    ensurePvTable(depth);
 
     for (Move move : legal) {
       Board copy = board.copy();
       copy.applyMove(move);
+      pushAccumulator(accumulators, 0, board, move);
       double score =
           alphaBeta(
               copy,
@@ -60,98 +270,458 @@ public class ChessAI {
               Double.NEGATIVE_INFINITY,
               Double.POSITIVE_INFINITY,
               aiPlayerColor.opponent(),
-              aiPlayerColor);
+              aiPlayerColor,
+              1,
+              accumulators);
+      if (aborted) break;
       if (score > bestScore + 1e-6) {
         bestScore = score;
         bestMove = move;
+        lastPv = rootPv(move);
       } else if (Math.abs(score - bestScore) <= 1e-6 && random.nextBoolean()) {
         bestMove = move;
+        lastPv = rootPv(move);
       }
     }
+    lastScore = bestScore;
+    if (lastPv.isEmpty()) lastPv = List.of(bestMove);
     return bestMove;
   }
 
+  /**
+   * Iterative deepening until about {@code maxNodes} positions have been visited; returns the best
+   * move of the last completed depth. Each depth after the first starts with an aspiration window
+   * around the previous score and widens it to the full range if the score falls outside.
+   */
+  public Move searchNodes(Board board, PlayerColor color, long maxNodes) {
+    nodes = 0;
+    lastScore = 0.0;
+    List<Move> order = new ArrayList<>(board.legalMoveIndex(color).moves());
+    if (order.isEmpty()) {
+      return null;
+    }
+    Collections.shuffle(order, random);
+    nodeLimit = maxNodes;
+    aborted = false;
+    try {
+      for (int depth = 1; depth < MAX_DEPTH; depth++) {
+        double window = params.aspirationWindow();
+        double alpha = depth == 1 ? Double.NEGATIVE_INFINITY : lastScore - window;
+        double beta = depth == 1 ? Double.POSITIVE_INFINITY : lastScore + window;
+        double score = searchRootWindow(board, color, depth, alpha, beta, order);
+        if (!aborted && (score <= alpha || score >= beta)) {
+          score =
+              searchRootWindow(
+                  board,
+                  color,
+                  depth,
+                  score <= alpha ? Double.NEGATIVE_INFINITY : alpha,
+                  score >= beta ? Double.POSITIVE_INFINITY : beta,
+                  order);
+          if (!aborted && (score <= alpha || score >= beta)) {
+            score =
+                searchRootWindow(
+                    board, color, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, order);
+          }
+        }
+        if (aborted) break;
+        lastScore = score;
+        if (Double.isInfinite(score)) break;
+      }
+    } finally {
+      nodeLimit = Long.MAX_VALUE;
+      aborted = false;
+    }
+    return order.getFirst();
+  }
+
+  /** Searches the root moves in order within the window and moves the best one to the front. */
+  private double searchRootWindow(
+      Board board, PlayerColor color, int depth, double alpha, double beta, List<Move> order) {
+    NnueNetwork.Accumulator[] accumulators = newAccumulatorStack(board, depth);
+    ensurePvTable(depth);
+    double bestScore = Double.NEGATIVE_INFINITY;
+    int best = 0;
+    for (int i = 0; i < order.size(); i++) {
+      Move move = order.get(i);
+      Board copy = board.copy();
+      copy.applyMove(move);
+      pushAccumulator(accumulators, 0, board, move);
+      double score =
+          alphaBeta(
+              copy,
+              depth - 1,
+              Math.max(alpha, bestScore),
+              beta,
+              color.opponent(),
+              color,
+              1,
+              accumulators);
+      if (aborted) return bestScore;
+      if (score > bestScore) {
+        bestScore = score;
+        best = i;
+      }
+      if (bestScore >= beta) break;
+    }
+    order.addFirst(order.remove(best));
+    return bestScore;
+  }
+
   private double alphaBeta(
       Board board,
       int depth,
       double alpha,
       double beta,
       PlayerColor turn,
-      PlayerColor perspective) {
+      PlayerColor perspective,
+      int ply,
+      NnueNetwork.Accumulator[] accumulators) {
+    if (++nodes > nodeLimit || isInterrupted()) {
+      aborted = true;
+      return 0.0;
+    }
+    pvLength[ply] = ply;
+    int repetition = board.repetitionDistance();
+    if ((repetition != 0 && (repetition <= ply || board.isThreefoldRepetition()))
+        || board.isFiftyMoveDraw()
+        || board.isAutomaticDrawByInsufficientMaterial()) {
+      return 0.0;
+    }
+    if (Endgames.isExact(board)) {
+      return evaluateBoard(board, perspective, accumulators == null ? null : accumulators[ply]);
+    }
     if (depth < 0) {
-      return evaluateBoard(board, perspective);
+      return quiescence(board, alpha, beta, turn, perspective, ply, 0, accumulators);
+    }
+    double alphaBefore = alpha;
+    double betaBefore = beta;
+    int hashMove = -1;
+    if (table != null) {
+      long entry = table.probe(board.hash());
+      if (entry != 0) {
+        hashMove = TranspositionTable.move(entry);
+        if (TranspositionTable.depth(entry) >= depth) {
+          double white = TranspositionTable.score(entry);
+          int bound = orient(TranspositionTable.bound(entry), perspective);
+          double score = perspective == PlayerColor.WHITE ? white : -white;
+          if (bound == TranspositionTable.EXACT
+              || (bound == TranspositionTable.LOWER && score >= beta)
+              || (bound == TranspositionTable.UPPER && score <= alpha)) {
+            return score;
+          }
+        }
+      }
     }
 
     List<Move> legal = board.generateLegalMoves(turn);
+    boolean inCheck = board.isKingInCheck(turn);
     if (legal.isEmpty()) {
-      if (board.isKingInCheck(turn)) {
+      if (inCheck) {
         return turn == perspective ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
       }
       return 0.0;
     }
 
     Collections.shuffle(legal, random);
-    if (turn == perspective) {
-      double value = Double.NEGATIVE_INFINITY;
-      for (Move move : legal) {
-        Board copy = board.copy();
-        copy.applyMove(move);
-        value =
-            Math.max(
-                value,
-                alphaBeta(copy, depth - 1, alpha, beta, turn.opponent(), perspective));
-        alpha = Math.max(alpha, value);
-        if (alpha >= beta) {
+    orderMoves(board, legal);
+    if (hashMove >= 0) {
+      for (int i = 0; i < legal.size(); i++) {
+        if (legal.get(i).encode() == hashMove) {
+          legal.addFirst(legal.remove(i));
           break;
         }
       }
-      return value;
-    } else {
-      double value = Double.POSITIVE_INFINITY;
-      for (Move move : legal) {
-        Board copy = board.copy();
-        copy.applyMove(move);
-        value =
-            Math.min(
-                value,
-                alphaBeta(copy, depth - 1, alpha, beta, turn.opponent(), perspective));
+    }
+    boolean maximizing = turn == perspective;
+    // at the frontier, a quiet move cannot gain more than the margin over the static score
+    double futile = Double.NaN;
+    if (depth == 0 && !inCheck) {
+      double margin = params.futilityMargin();
+      double eval =
+          evaluateBoard(board, perspective, accumulators == null ? null : accumulators[ply]);
+      if (maximizing ? eval + margin <= alpha : eval - margin >= beta) {
+        futile = maximizing ? eval + margin : eval - margin;
+      }
+    }
+    double value = maximizing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    Move best = null;
+    for (int i = 0; i < legal.size(); i++) {
+      Move move = legal.get(i);
+      Board copy = board.copy();
+      copy.applyMove(move);
+      boolean quiet =
+          !inCheck && !isCaptureOrPromotion(board, move) && !copy.isKingInCheck(turn.opponent());
+      if (quiet && !Double.isNaN(futile)) {
+        if (maximizing ? futile > value : futile < value) value = futile;
+        continue;
+      }
+      pushAccumulator(accumulators, ply, board, move);
+      int reduction = quiet && depth >= 2 ? params.reduction(depth, i) : 0;
+      double score =
+          alphaBeta(
+              copy,
+              depth - 1 - reduction,
+              alpha,
+              beta,
+              turn.opponent(),
+              perspective,
+              ply + 1,
+              accumulators);
+      if (reduction > 0 && !aborted && (maximizing ? score > alpha : score < beta)) {
+        // a reduced move that looks good is searched again at full depth
+        score =
+            alphaBeta(
+                copy, depth - 1, alpha, beta, turn.opponent(), perspective, ply + 1, accumulators);
+      }
+      if (aborted) return 0.0;
+      if (maximizing ? score > value : score < value) {
+        value = score;
+        best = move;
+        recordPv(ply, move);
+      }
+      if (maximizing) {
+        alpha = Math.max(alpha, value);
+      } else {
         beta = Math.min(beta, value);
-        if (beta <= alpha) {
-          break;
+      }
+      if (alpha >= beta) {
+        break;
+      }
+    }
+    if (table != null) {
+      int bound =
+          value <= alphaBefore
+              ? TranspositionTable.UPPER
+              : value >= betaBefore ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+      table.store(
+          board.hash(),
+          depth,
+          orient(bound, perspective),
+          perspective == PlayerColor.WHITE ? value : -value,
+          best);
+    }
+    return value;
+  }
+
+  /** Turns a bound on White's score into one on {@code perspective}'s, or back. */
+  private static int orient(int bound, PlayerColor perspective) {
+    if (perspective == PlayerColor.WHITE || bound == TranspositionTable.EXACT) return bound;
+    return bound == TranspositionTable.LOWER ? TranspositionTable.UPPER : TranspositionTable.LOWER;
+  }
+
+  /**
+   * Searches captures past the horizon so that leaves are scored in quiet positions. The side to
+   * move may stand pat on the static score instead of capturing; captures that lose material by
+   * {@link Board#staticExchange} are not searched at all, and the rest are tried best gain first.
+   */
+  private double quiescence(
+      Board board,
+      double alpha,
+      double beta,
+      PlayerColor turn,
+      PlayerColor perspective,
+      int ply,
+      int qply,
+      NnueNetwork.Accumulator[] accumulators) {
+    if (qply > 0 && (++nodes > nodeLimit || isInterrupted())) {
+      aborted = true;
+      return 0.0;
+    }
+    if (board.isAutomaticDrawByInsufficientMaterial()) {
+      return 0.0;
+    }
+    double standPat =
+        evaluateBoard(board, perspective, accumulators == null ? null : accumulators[ply]);
+    if (qply == MAX_QUIESCENCE_PLIES || Endgames.isExact(board)) {
+      return standPat;
+    }
+    boolean maximizing = turn == perspective;
+    if (maximizing ? standPat >= beta : standPat <= alpha) {
+      return standPat;
+    }
+
+    List<Move> captures = new ArrayList<>();
+    List<Integer> gains = new ArrayList<>();
+    for (int r = 0; r < 8; r++) {
+      for (int c = 0; c < 8; c++) {
+        Piece piece = board.at(r, c);
+        if (piece == null || piece.getColor() != turn) continue;
+        for (Move move : board.generatePseudoMoves(r, c)) {
+          if (!isCaptureOrPromotion(board, move)) continue;
+          int gain = board.staticExchange(move);
+          if (gain < 0) continue;
+          int at = gains.size();
+          while (at > 0 && gains.get(at - 1) < gain) at--;
+          captures.add(at, move);
+          gains.add(at, gain);
         }
       }
-      return value;
     }
+
+    double value = standPat;
+    for (Move move : captures) {
+      if (!board.keepsKingSafe(move, turn)) continue;
+      Board copy = board.copy();
+      copy.applyMove(move);
+      pushAccumulator(accumulators, ply, board, move);
+      double score =
+          quiescence(
+              copy, alpha, beta, turn.opponent(), perspective, ply + 1, qply + 1, accumulators);
+      if (aborted) return 0.0;
+      if (maximizing) {
+        value = Math.max(value, score);
+        alpha = Math.max(alpha, value);
+      } else {
+        value = Math.min(value, score);
+        beta = Math.min(beta, value);
+      }
+      if (alpha >= beta) {
+        break;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Orders moves for the search: promotions and captures that win material by static exchange,
+   * biggest gain first, then even trades, then quiet moves, and losing captures last. The sort is
+   * stable, so moves of equal rank keep their shuffled order.
+   */
+  private static void orderMoves(Board board, List<Move> moves) {
+    long[] keyed = new long[moves.size()];
+    for (int i = 0; i < keyed.length; i++) {
+      Move move = moves.get(i);
+      int rank = 1000;
+      if (isCaptureOrPromotion(board, move)) {
+        int gain = board.staticExchange(move);
+        rank = gain > 0 ? 2000 + gain : gain == 0 ? 1500 : gain;
+      }
+      // higher rank sorts first, then the original index
+      keyed[i] = (long) (4000 - rank) << 32 | i;
+    }
+    Arrays.sort(keyed);
+    Move[] sorted = new Move[keyed.length];
+    for (int i = 0; i < keyed.length; i++) sorted[i] = moves.get((int) keyed[i]);
+    for (int i = 0; i < sorted.length; i++) moves.set(i, sorted[i]);
+  }
+
+  /** Polls the interrupt flag every 4096 nodes, so a cancelled search stops within a moment. */
+  private boolean isInterrupted() {
+    return (nodes & 4095) == 0 && Thread.currentThread().isInterrupted();
+  }
+
+  private static boolean isCaptureOrPromotion(Board board, Move move) {
+    if (board.at(move.tr, move.tc) != null) return true;
+    Piece piece = board.at(move.fr, move.fc);
+    return piece.getType() == PieceType.PAWN && (move.tr == 0 || move.tr == 7);
+  }
+
+  /** {@code move} followed by the variation the search just found below it. */
+  private List<Move> rootPv(Move move) {
+    List<Move> pv = new ArrayList<>(pvLength[1]);
+    pv.add(move);
+    for (int ply = 1; ply < pvLength[1]; ply++) pv.add(pvTable[1][ply]);
+    return Collections.unmodifiableList(pv);
+  }
+
+  private void ensurePvTable(int depth) {
+    if (pvLength.length < depth + 2) {
+      pvTable = new Move[depth + 2][depth + 2];
+      pvLength = new int[depth + 2];
+    }
+  }
+
+  /** Sets the variation at {@code ply} to {@code move} followed by the child's variation. */
+  private void recordPv(int ply, Move move) {
+    Move[] line = pvTable[ply];
+    line[ply] = move;
+    int childLength = pvLength[ply + 1];
+    System.arraycopy(pvTable[ply + 1], ply + 1, line, ply + 1, childLength - ply - 1);
+    pvLength[ply] = childLength;
+  }
+
+  private NnueNetwork.Accumulator[] newAccumulatorStack(Board root, int depth) {
+    if (network == null) {
+      return null;
+    }
+    NnueNetwork.Accumulator[] stack =
+        new NnueNetwork.Accumulator[depth + 2 + MAX_QUIESCENCE_PLIES];
+    for (int i = 0; i < stack.length; i++) {
+      stack[i] = network.newAccumulator();
+    }
+    stack[0].refresh(root);
+    return stack;
+  }
+
+  private static void pushAccumulator(
+      NnueNetwork.Accumulator[] accumulators, int ply, Board before, Move move) {
+    if (accumulators == null) {
+      return;
+    }
+    NnueNetwork.Accumulator child = accumulators[ply + 1];
+    child.copyFrom(accumulators[ply]);
+    child.update(before, move);
+  }
+
+  private double evaluateBoard(
+      Board board, PlayerColor perspective, NnueNetwork.Accumulator accumulator) {
+    long key = board.hash();
+    double whiteScore = evalCache.probe(key);
+    if (Double.isNaN(whiteScore)) {
+      whiteScore = Endgames.evaluate(board);
+      if (Double.isNaN(whiteScore)) {
+        double generic =
+            accumulator != null
+                ? network.evaluate(accumulator, PlayerColor.WHITE)
+                : classicalEvaluation(board, weights);
+        whiteScore = generic * Endgames.scale(board);
+      }
+      evalCache.store(key, whiteScore);
+    }
+    return perspective == PlayerColor.WHITE ? whiteScore : -whiteScore;
+  }
+
+  /** Hand-written material, mobility and check score from White's point of view. */
+  static double classicalEvaluation(Board board, EvalWeights weights) {
+    double[] features = new double[EvalWeights.COUNT];
+    int kings = evaluationFeatures(board, features);
+    return KING_VALUE * kings + weights.dot(features);
   }
 
-  private double evaluateBoard(Board board, PlayerColor perspective) {
-    double score = 0.0;
+  /**
+   * Fills {@code features} with the White-minus-Black terms weighted by {@link EvalWeights} and
+   * returns the king count difference, which is not tunable.
+   */
+  static int evaluationFeatures(Board board, double[] features) {
+    Arrays.fill(features, 0.0);
+    int kings = 0;
     for (int r = 0; r < 8; r++) {
       for (int c = 0; c < 8; c++) {
         Piece piece = board.at(r, c);
         if (piece == null) continue;
-        double value = switch (piece.getType()) {
-          case KING -> KING_VALUE;
-          case QUEEN -> QUEEN_VALUE;
-          case ROOK -> ROOK_VALUE;
-          case BISHOP -> BISHOP_VALUE;
-          case KNIGHT -> KNIGHT_VALUE;
-          case PAWN -> PAWN_VALUE;
-        };
-        score += piece.getColor() == perspective ? value : -value;
+        int sign = piece.getColor() == PlayerColor.WHITE ? 1 : -1;
+        switch (piece.getType()) {
+          case KING -> kings += sign;
+          case QUEEN -> features[EvalWeights.QUEEN] += sign;
+          case ROOK -> features[EvalWeights.ROOK] += sign;
+          case BISHOP -> features[EvalWeights.BISHOP] += sign;
+          case KNIGHT -> features[EvalWeights.KNIGHT] += sign;
+          case PAWN -> features[EvalWeights.PAWN] += sign;
+        }
       }
     }
 
-    int mobility = board.generateLegalMoves(perspective).size();
-    int oppMobility = board.generateLegalMoves(perspective.opponent()).size();
-    score += 0.05 * (mobility - oppMobility);
+    int mobility = board.generateLegalMoves(PlayerColor.WHITE).size();
+    int oppMobility = board.generateLegalMoves(PlayerColor.BLACK).size();
+    features[EvalWeights.MOBILITY] = mobility - oppMobility;
 
-    if (board.isKingInCheck(perspective)) {
-      score -= 0.5;
+    if (board.isKingInCheck(PlayerColor.WHITE)) {
+      features[EvalWeights.CHECK] -= 1;
     }
-    if (board.isKingInCheck(perspective.opponent())) {
-      score += 0.5;
+    if (board.isKingInCheck(PlayerColor.BLACK)) {
+      features[EvalWeights.CHECK] += 1;
     }
-    return score;
+    return kings;
   }
 }
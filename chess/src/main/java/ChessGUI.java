@@ -1,6 +1,5 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.border.LineBorder;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Cursor;
@@ -12,39 +11,76 @@ import java.awt.Graphics2D;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Image;
-import java.awt.Insets;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
-import java.awt.image.BufferedImage;
-import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.EnumMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class ChessGUI {
   private Board board;
   private PlayerColor turn;
-  private final JButton[][] squares = new JButton[8][8];
+  private BoardView boardView;
   private final JFrame frame = new JFrame("Chess");
   private final JLabel status = new JLabel();
+  private final JLabel explorer = new JLabel();
+  private final EvalBar evalBar = new EvalBar();
+  private final JLabel searchInfo = new JLabel();
+  private final JLabel principalVariation = new JLabel();
+  /** The newest search result not yet shown; see {@link #showSearchUpdate}. */
+  private SearchUpdate pendingUpdate;
+  private final Timer searchUpdateTimer = new Timer(SEARCH_UPDATE_MILLIS, e -> flushSearchUpdate());
+  private final OpeningIndex openingIndex;
+  private final GameLog gameLog;
+  private String startFen;
+  /** Every move of the game, including taken-back ones that can still be redone. */
+  private final MoveHistory line = new MoveHistory();
+  /** One record per move now on the board; the ply shown is its size. */
+  private final List<Board.Undo> undoStack = new ArrayList<>();
+  private final DefaultListModel<String> moveListModel = new DefaultListModel<>();
+  private final JList<String> moveList = new JList<>(moveListModel);
+  private boolean updatingMoveList;
+  private final Map<AnalysisKey, Move> analysedMoves =
+      new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AnalysisKey, Move> eldest) {
+          return size() > ANALYSED_POSITIONS;
+        }
+      };
   private int selR = -1, selC = -1;
-  private final Set<Integer> legalTargets = new HashSet<>();
-  private final EnumMap<PlayerColor, EnumMap<PieceType, Icon>> pieceIcons =
-      new EnumMap<>(PlayerColor.class);
-  private final ChessAI ai = new ChessAI();
+  private long legalTargets;
+  private final EnumMap<PlayerColor, EnumMap<PieceType, Image>> pieceImages;
+  private final CompletableFuture<ChessAI> engine;
+  private boolean firstAiMoveReported;
   private ChessAI.Difficulty selectedDifficulty = ChessAI.Difficulty.MEDIUM;
   private JComboBox<ChessAI.Difficulty> difficultySelector;
   private boolean aiThinking;
   private boolean gameOver;
   private long gameId;
+  private GameAnnotator annotator;
+  private SwingWorker<Move, SearchUpdate> search;
+  private SwingWorker<List<GameAnnotator.Annotation>, GameAnnotator.Annotation> review;
+  private JButton reviewButton;
+
+  private static final int ANALYSED_POSITIONS = 4096;
+  private static final int SEARCH_UPDATE_MILLIS = 100;
+
+  /** A position the computer has already answered at a difficulty, so replays need no search. */
+  private record AnalysisKey(long hash, ChessAI.Difficulty difficulty) {}
+
+  /** One completed search iteration, formatted off the EDT; the score is from White's side. */
+  private record SearchUpdate(int depth, double whiteScore, String pv, long nodes, long nps) {}
 
   private static final java.awt.Color LIGHT_SQUARE = new java.awt.Color(196, 210, 244);
   private static final java.awt.Color DARK_SQUARE = new java.awt.Color(68, 86, 122);
   private static final java.awt.Color SELECT_COLOR = new java.awt.Color(255, 196, 61);
   private static final java.awt.Color TARGET_COLOR = new java.awt.Color(124, 187, 143);
-  private static final int ICON_BOUND = 64;
+  private static final java.awt.Color GRID_COLOR = new java.awt.Color(255, 255, 255, 70);
   private static final java.awt.Color COORDINATE_COLOR = new java.awt.Color(62, 74, 96);
 
   public ChessGUI() {
@@ -53,53 +89,174 @@ public class ChessGUI {
     gameOver = false;
     aiThinking = false;
     gameId = 0L;
-    loadPieceIcons();
+    pieceImages = SpriteAtlas.load(BoardView.DEFAULT_SQUARE_SIZE);
+    openingIndex = OpeningIndex.fromSystemProperty();
+    gameLog = GameLog.fromSystemProperty();
     initUI();
+    resumeOrStartRecording();
     updateBoardUI();
     updateStatus(null);
+    engine = CompletableFuture.supplyAsync(ChessGUI::startEngine);
+    if (!gameOver && turn == PlayerColor.BLACK) {
+      performAIMove();
+    }
   }
 
-  private void loadPieceIcons() {
-    for (PlayerColor color : PlayerColor.values()) {
-      EnumMap<PieceType, Icon> byType = new EnumMap<>(PieceType.class);
-      for (PieceType type : PieceType.values()) {
-        String resourceName =
-            "/icons/"
-                + (color == PlayerColor.WHITE ? "white" : "black")
-                + "_"
-                + type.name().toLowerCase()
-                + ".png";
-        byType.put(type, loadIcon(resourceName));
+  /** Offers to continue a game the last session left unfinished, else starts a new record. */
+  private void resumeOrStartRecording() {
+    if (gameLog == null) {
+      return;
+    }
+    GameRecord unfinished = gameLog.unfinishedGame();
+    if (unfinished != null) {
+      if (unfinished.moves().size() == 0) {
+        return;
+      }
+      int choice =
+          JOptionPane.showConfirmDialog(
+              frame,
+              "Resume the unfinished game from your last session?",
+              "Resume Game",
+              JOptionPane.YES_NO_OPTION);
+      if (choice == JOptionPane.YES_OPTION) {
+        startFen = unfinished.startFen();
+        board = startFen == null ? new Board() : Board.fromFen(startFen);
+        for (int i = 0; i < unfinished.moves().size(); i++) {
+          extendLine(unfinished.moves().get(i));
+        }
+        turn = board.sideToMove();
+        refreshMoveListSelection();
+        return;
       }
-      pieceIcons.put(color, byType);
+      gameLog.endGame(PgnReader.UNKNOWN);
+    }
+    gameLog.startGame(null);
+  }
+
+  /** Plays a move at the shown ply; taken-back moves after it are dropped. */
+  private void playMove(Move move) {
+    int ply = undoStack.size();
+    if (ply < line.size() && line.code(ply) == move.encode()) {
+      // replaying the next move of the line keeps the moves after it
+      undoStack.add(board.makeMove(move));
+      refreshMoveListSelection();
+      return;
     }
+    boolean branching = ply < line.size();
+    if (branching) {
+      line.truncate(ply);
+      moveListModel.removeRange(ply, moveListModel.size() - 1);
+    }
+    recordMove(move, branching);
+    extendLine(move);
+    refreshMoveListSelection();
+  }
+
+  private void extendLine(Move move) {
+    String separator = board.sideToMove() == PlayerColor.WHITE ? ". " : "... ";
+    String number = board.fullmoveNumber() + separator;
+    moveListModel.addElement(number + San.format(board, move));
+    line.add(move);
+    undoStack.add(board.makeMove(move));
   }
 
-  private Icon loadIcon(String resourcePath) {
-    URL resource = getClass().getResource(resourcePath);
-    if (resource == null) {
-      throw new IllegalStateException("Missing resource: " + resourcePath);
+  private void recordMove(Move move, boolean branching) {
+    if (gameLog == null) {
+      return;
+    }
+    if (branching || !gameLog.isGameOpen()) {
+      // the log is append-only, so a changed line is recorded again as a new game
+      recordResult(PgnReader.UNKNOWN);
+      gameLog.startGame(startFen);
+      for (Board.Undo undo : undoStack) {
+        gameLog.appendMove(undo.move());
+      }
     }
-    ImageIcon original = new ImageIcon(resource);
-    int width = original.getIconWidth();
-    int height = original.getIconHeight();
-    if (width <= 0 || height <= 0) {
-      return original;
+    gameLog.appendMove(move);
+  }
+
+  /**
+   * Shows the position after {@code ply} moves by making or unmaking moves on the one board, so
+   * jumps cost one step per ply and keep no board copies.
+   */
+  private void goToPly(int ply) {
+    ply = Math.max(0, Math.min(ply, line.size()));
+    if (ply == undoStack.size()) {
+      refreshMoveListSelection();
+      return;
     }
-    double scale = Math.min((double) ICON_BOUND / width, (double) ICON_BOUND / height);
-    int scaledW = (int) Math.round(width * scale);
-    int scaledH = (int) Math.round(height * scale);
-    BufferedImage canvas = new BufferedImage(ICON_BOUND, ICON_BOUND, BufferedImage.TYPE_INT_ARGB);
-    Graphics2D g2 = canvas.createGraphics();
-    g2.setRenderingHint(
-        RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-    g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    int x = (ICON_BOUND - scaledW) / 2;
-    int y = (ICON_BOUND - scaledH) / 2;
-    g2.drawImage(original.getImage(), x, y, scaledW, scaledH, null);
-    g2.dispose();
-    return new ImageIcon(canvas);
+    boardView.finishAnimation();
+    cancelSearch();
+    while (undoStack.size() > ply) {
+      board.unmakeMove(undoStack.removeLast());
+    }
+    while (undoStack.size() < ply) {
+      undoStack.add(board.makeMove(line.get(undoStack.size())));
+    }
+    turn = board.sideToMove();
+    selR = selC = -1;
+    legalTargets = 0L;
+    gameOver = false;
+    updateBoardUI();
+    updateStatus(ply == 0 ? null : undoStack.getLast().move(), false);
+    refreshMoveListSelection();
+    if (!gameOver && turn == PlayerColor.BLACK && ply == line.size()) {
+      performAIMove();
+    }
+  }
+
+  /** Steps back to the previous position with White to move. */
+  private void undoMove() {
+    goToPly(undoStack.size() - 1);
+    if (turn == PlayerColor.BLACK && !undoStack.isEmpty()) {
+      goToPly(undoStack.size() - 1);
+    }
+  }
+
+  /** Steps forward through taken-back moves to the next position with White to move. */
+  private void redoMove() {
+    goToPly(undoStack.size() + 1);
+    if (turn == PlayerColor.BLACK && undoStack.size() < line.size()) {
+      goToPly(undoStack.size() + 1);
+    }
+  }
+
+  private void refreshMoveListSelection() {
+    updatingMoveList = true;
+    int ply = undoStack.size();
+    if (ply == 0) {
+      moveList.clearSelection();
+    } else {
+      moveList.setSelectedIndex(ply - 1);
+      moveList.ensureIndexIsVisible(ply - 1);
+    }
+    updatingMoveList = false;
+  }
+
+  private void recordResult(int result) {
+    if (gameLog != null && gameLog.isGameOpen()) {
+      gameLog.endGame(result);
+    }
+  }
+
+  private static ChessAI startEngine() {
+    long start = System.nanoTime();
+    ChessAI ai = new ChessAI();
+    ai.chooseMove(new Board(), PlayerColor.BLACK, ChessAI.Difficulty.EASY);
+    reportMetric("engine warm-up", (System.nanoTime() - start) / 1_000_000);
+    return ai;
+  }
+
+  private static long millisSinceLaunch() {
+    return ProcessHandle.current()
+        .info()
+        .startInstant()
+        .map(start -> Duration.between(start, Instant.now()).toMillis())
+        .orElse(-1L);
+  }
+
+  private static void reportMetric(String name, long millis) {
+    System.out.println("[startup] " + name + ": " + millis + " ms");
   }
 
   private void initUI() {
@@ -124,13 +281,15 @@ public class ChessGUI {
     boardContainer.setOpaque(false);
     boardContainer.setBorder(new EmptyBorder(20, 20, 20, 20));
 
-    JPanel boardPanel = new JPanel(new GridLayout(8, 8));
-    boardPanel.setOpaque(false);
-    boardPanel.setPreferredSize(new Dimension(520, 520));
+    boardView =
+        new BoardView(
+            LIGHT_SQUARE, DARK_SQUARE, SELECT_COLOR, TARGET_COLOR, GRID_COLOR, pieceImages);
+    boardView.addSquareListener(this::onSquareClicked);
+    boardView.onFirstPaint(() -> reportMetric("time to first frame", millisSinceLaunch()));
 
     JPanel boardWithLabels = new JPanel(new BorderLayout());
     boardWithLabels.setOpaque(false);
-    boardWithLabels.add(boardPanel, BorderLayout.CENTER);
+    boardWithLabels.add(boardView, BorderLayout.CENTER);
 
     JPanel filesTop = new JPanel(new GridLayout(1, 8));
     filesTop.setOpaque(false);
@@ -147,6 +306,8 @@ public class ChessGUI {
       ranksLeft.add(createCoordinateLabel(String.valueOf(8 - r)));
     }
     boardWithLabels.add(ranksLeft, BorderLayout.WEST);
+    evalBar.setBorder(new EmptyBorder(8, 10, 8, 0));
+    boardWithLabels.add(evalBar, BorderLayout.EAST);
 
     boardContainer.add(boardWithLabels);
 
@@ -167,26 +328,6 @@ public class ChessGUI {
     status.setBorder(new EmptyBorder(18, 12, 18, 12));
     setStatusMessage("Welcome to Chess — prepare to play as White!");
 
-    for (int r = 0; r < 8; r++) {
-      for (int c = 0; c < 8; c++) {
-        JButton btn = new JButton();
-        btn.setFocusPainted(false);
-        btn.setMargin(new Insets(0, 0, 0, 0));
-        btn.setOpaque(true);
-        btn.setBorder(BorderFactory.createEmptyBorder());
-        btn.setHorizontalAlignment(SwingConstants.CENTER);
-        btn.setVerticalAlignment(SwingConstants.CENTER);
-        btn.setIconTextGap(0);
-        final int rr = r;
-        final int cc = c;
-        btn.addActionListener(e -> onSquareClicked(rr, cc));
-        java.awt.Color base = ((r + c) % 2 == 0) ? LIGHT_SQUARE : DARK_SQUARE;
-        btn.setBackground(base);
-        squares[r][c] = btn;
-        boardPanel.add(btn);
-      }
-    }
-
     JLabel difficultyLabel = new JLabel("Difficulty");
     difficultyLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
     difficultyLabel.setForeground(new java.awt.Color(205, 214, 255));
@@ -224,10 +365,51 @@ public class ChessGUI {
               }
               aiThinking = false;
               gameOver = true;
+              recordResult(PgnReader.BLACK_WINS);
               JOptionPane.showMessageDialog(frame, "You resign. The computer claims victory.");
               resetBoardState();
             });
 
+    JButton undo = createControlButton("Undo Move", this::undoMove);
+    JButton redo = createControlButton("Redo Move", this::redoMove);
+    JPanel history = new JPanel(new GridLayout(1, 2, 8, 0));
+    history.setOpaque(false);
+    history.setAlignmentX(Component.CENTER_ALIGNMENT);
+    history.setMaximumSize(new Dimension(Integer.MAX_VALUE, 48));
+    history.add(undo);
+    history.add(redo);
+
+    reviewButton = createControlButton("Review Game", this::reviewGame);
+
+    moveList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    moveList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+    moveList.setVisibleRowCount(-1);
+    moveList.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+    moveList.addListSelectionListener(
+        e -> {
+          if (!e.getValueIsAdjusting() && !updatingMoveList && moveList.getSelectedIndex() >= 0) {
+            goToPly(moveList.getSelectedIndex() + 1);
+          }
+        });
+    JScrollPane moveScroll = new JScrollPane(moveList);
+    moveScroll.setAlignmentX(Component.CENTER_ALIGNMENT);
+    moveScroll.setPreferredSize(new Dimension(180, 120));
+    moveScroll.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
+
+    JLabel engineTitle = new JLabel("Engine Line");
+    engineTitle.setAlignmentX(Component.CENTER_ALIGNMENT);
+    engineTitle.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 14));
+    engineTitle.setForeground(new java.awt.Color(205, 214, 255));
+    searchInfo.setAlignmentX(Component.CENTER_ALIGNMENT);
+    searchInfo.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+    searchInfo.setForeground(new java.awt.Color(176, 192, 226));
+    searchInfo.setBorder(new EmptyBorder(6, 0, 4, 0));
+    principalVariation.setAlignmentX(Component.CENTER_ALIGNMENT);
+    principalVariation.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+    principalVariation.setForeground(new java.awt.Color(235, 240, 255));
+    searchUpdateTimer.setRepeats(false);
+    clearSearchInfo();
+
     JSeparator separator = new JSeparator();
     separator.setMaximumSize(new Dimension(Integer.MAX_VALUE, 1));
     separator.setForeground(new java.awt.Color(66, 78, 105));
@@ -254,11 +436,34 @@ public class ChessGUI {
     sidePanel.add(newGame);
     sidePanel.add(Box.createVerticalStrut(10));
     sidePanel.add(resign);
+    sidePanel.add(Box.createVerticalStrut(10));
+    sidePanel.add(history);
+    sidePanel.add(Box.createVerticalStrut(10));
+    sidePanel.add(reviewButton);
+    sidePanel.add(Box.createVerticalStrut(10));
+    sidePanel.add(moveScroll);
+    sidePanel.add(Box.createVerticalStrut(18));
+    sidePanel.add(engineTitle);
+    sidePanel.add(searchInfo);
+    sidePanel.add(principalVariation);
     sidePanel.add(Box.createVerticalStrut(18));
     sidePanel.add(separator);
     sidePanel.add(Box.createVerticalStrut(18));
     sidePanel.add(tipTitle);
     sidePanel.add(tipBody);
+    if (openingIndex != null) {
+      JLabel explorerTitle = new JLabel("Opening Explorer");
+      explorerTitle.setAlignmentX(Component.CENTER_ALIGNMENT);
+      explorerTitle.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 14));
+      explorerTitle.setForeground(new java.awt.Color(205, 214, 255));
+      explorer.setAlignmentX(Component.CENTER_ALIGNMENT);
+      explorer.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+      explorer.setForeground(new java.awt.Color(176, 192, 226));
+      explorer.setBorder(new EmptyBorder(8, 12, 0, 12));
+      sidePanel.add(Box.createVerticalStrut(18));
+      sidePanel.add(explorerTitle);
+      sidePanel.add(explorer);
+    }
     sidePanel.add(Box.createVerticalGlue());
 
     root.add(boardContainer, BorderLayout.CENTER);
@@ -310,15 +515,28 @@ public class ChessGUI {
   }
 
   private void resetBoardState() {
+    boardView.finishAnimation();
+    if (review != null) {
+      review.cancel(true);
+    }
+    recordResult(PgnReader.UNKNOWN);
+    if (gameLog != null) {
+      gameLog.startGame(null);
+    }
     board = new Board();
+    startFen = null;
+    line.clear();
+    undoStack.clear();
+    moveListModel.clear();
     turn = PlayerColor.WHITE;
     selR = selC = -1;
-    legalTargets.clear();
-    aiThinking = false;
+    legalTargets = 0L;
+    cancelSearch();
     gameOver = false;
-    gameId++;
+    clearSearchInfo();
     updateBoardUI();
     updateStatus(null);
+    refreshMoveListSelection();
   }
 
   private void setStatusMessage(String messageBody) {
@@ -343,19 +561,20 @@ public class ChessGUI {
 
     if (selR == r && selC == c) {
       selR = selC = -1;
-      legalTargets.clear();
+      legalTargets = 0L;
       updateBoardUI();
       return;
     }
 
     int key = r * 8 + c;
-    if (legalTargets.contains(key)) {
+    if ((legalTargets & (1L << key)) != 0) {
       Move move = new Move(selR, selC, r, c);
-      board.applyMove(move);
+      playMove(move);
       turn = turn.opponent();
       selR = selC = -1;
-      legalTargets.clear();
+      legalTargets = 0L;
       updateBoardUI();
+      boardView.animate(move, null);
       updateStatus(move);
       if (!gameOver && turn == PlayerColor.BLACK) {
         performAIMove();
@@ -372,39 +591,12 @@ public class ChessGUI {
   private void selectSquare(int r, int c) {
     selR = r;
     selC = c;
-    legalTargets.clear();
-    List<Move> legal = board.generateLegalMoves(turn);
-    for (Move move : legal) {
-      if (move.fr == r && move.fc == c) {
-        legalTargets.add(move.tr * 8 + move.tc);
-      }
-    }
+    legalTargets = board.legalMoveIndex(turn).targets(r * 8 + c);
     updateBoardUI();
   }
 
   private void updateBoardUI() {
-    for (int r = 0; r < 8; r++) {
-      for (int c = 0; c < 8; c++) {
-        Piece piece = board.at(r, c);
-        JButton btn = squares[r][c];
-        btn.setIcon(piece == null ? null : getPieceIcon(piece));
-        btn.setText("");
-        java.awt.Color base = ((r + c) % 2 == 0) ? LIGHT_SQUARE : DARK_SQUARE;
-        btn.setBackground(base);
-        if (r == selR && c == selC) {
-          btn.setBackground(SELECT_COLOR);
-        } else if (legalTargets.contains(r * 8 + c)) {
-          btn.setBackground(TARGET_COLOR);
-        }
-        btn.setBorder(new LineBorder(new java.awt.Color(255, 255, 255, 70)));
-      }
-    }
-  }
-
-  private Icon getPieceIcon(Piece piece) {
-    Map<PieceType, Icon> byType = pieceIcons.get(piece.getColor());
-    if (byType == null) return null;
-    return byType.get(piece.getType());
+    boardView.sync(board, selR, selC, legalTargets);
   }
 
   private JLabel createCoordinateLabel(String text) {
@@ -415,10 +607,56 @@ public class ChessGUI {
     return label;
   }
 
+  private void updateExplorer() {
+    if (openingIndex == null) {
+      return;
+    }
+    LegalMoveIndex legal = board.legalMoveIndex(turn);
+    StringBuilder html = new StringBuilder("<html>");
+    int shown = 0;
+    for (OpeningIndex.Entry entry : openingIndex.lookup(board.hash())) {
+      if (shown == 5) break;
+      if (!legal.isLegal(entry.move)) continue;
+      double games = entry.games();
+      html.append(
+          String.format(
+              "<b>%s</b> %,d &nbsp;%.0f/%.0f/%.0f%%<br/>",
+              San.format(board, entry.move),
+              entry.games(),
+              entry.wins * 100 / games,
+              entry.draws * 100 / games,
+              entry.losses * 100 / games));
+      shown++;
+    }
+    if (shown == 0) {
+      html.append("No games from this position.");
+    }
+    explorer.setText(html.append("</html>").toString());
+  }
+
   private void updateStatus(Move lastMove) {
+    updateStatus(lastMove, true);
+  }
+
+  /** {@code announce} is false while browsing the move list, which shows no result dialogs. */
+  private void updateStatus(Move lastMove, boolean announce) {
+    updateExplorer();
+    String drawTitle = null;
+    String drawDetail = null;
     if (board.isAutomaticDrawByInsufficientMaterial()) {
+      drawTitle = "Draw by insufficient material.";
+      drawDetail = "Neither side has enough material to checkmate.";
+    } else if (board.isThreefoldRepetition()) {
+      drawTitle = "Draw by threefold repetition.";
+      drawDetail = "The same position has appeared three times.";
+    } else if (board.isFiftyMoveDraw()) {
+      drawTitle = "Draw by the fifty-move rule.";
+      drawDetail = "Fifty moves passed without a capture or pawn move.";
+    }
+    if (drawTitle != null) {
       gameOver = true;
       aiThinking = false;
+      recordResult(PgnReader.DRAW);
       StringBuilder message = new StringBuilder();
       if (lastMove != null) {
         message
@@ -427,15 +665,20 @@ public class ChessGUI {
             .append("</span><br/>");
       }
       message
-          .append(
-              "<span style='font-size:15px;font-weight:bold;color:#ffd369;'>Draw by insufficient material.</span><br/>")
-          .append("<span style='color:#d6e0ff;'>Neither side has enough material to checkmate.</span>");
+          .append("<span style='font-size:15px;font-weight:bold;color:#ffd369;'>")
+          .append(drawTitle)
+          .append("</span><br/>")
+          .append("<span style='color:#d6e0ff;'>")
+          .append(drawDetail)
+          .append("</span>");
       setStatusMessage(message.toString());
-      JOptionPane.showMessageDialog(frame, "Draw by insufficient material.");
+      if (announce) {
+        JOptionPane.showMessageDialog(frame, drawTitle);
+      }
       return;
     }
 
-    List<Move> legal = board.generateLegalMoves(turn);
+    LegalMoveIndex legal = board.legalMoveIndex(turn);
     boolean inCheck = board.isKingInCheck(turn);
     StringBuilder message = new StringBuilder();
     String dialogMessage = null;
@@ -450,6 +693,10 @@ public class ChessGUI {
     if (legal.isEmpty()) {
       gameOver = true;
       aiThinking = false;
+      recordResult(
+          !inCheck
+              ? PgnReader.DRAW
+              : turn == PlayerColor.WHITE ? PgnReader.BLACK_WINS : PgnReader.WHITE_WINS);
       if (inCheck) {
         boolean playerToMove = (turn == PlayerColor.WHITE);
         String loser = playerToMove ? "You" : "Computer";
@@ -496,7 +743,7 @@ public class ChessGUI {
           .append("</span>");
     }
     setStatusMessage(message.toString());
-    if (dialogMessage != null) {
+    if (dialogMessage != null && announce) {
       JOptionPane.showMessageDialog(frame, dialogMessage);
     }
   }
@@ -520,47 +767,297 @@ public class ChessGUI {
     return (pieceName.isEmpty() ? "" : pieceName + " ") + from + " → " + to;
   }
 
+  /**
+   * Drops the computer's search, whose move belongs to the position being left, and interrupts it
+   * so that it stops within a few thousand nodes instead of finishing its depth.
+   */
+  private void cancelSearch() {
+    gameId++;
+    aiThinking = false;
+    if (search != null) {
+      search.cancel(true);
+      search = null;
+    }
+  }
+
   private void performAIMove() {
     if (aiThinking || gameOver || turn != PlayerColor.BLACK) {
       return;
     }
-    aiThinking = true;
     final long currentGameId = gameId;
+    final AnalysisKey key = new AnalysisKey(board.hash(), selectedDifficulty);
+    Move known = analysedMoves.get(key);
+    if (known != null) {
+      // answered before, e.g. when replaying after an undo: no need to search again
+      SwingUtilities.invokeLater(() -> playComputerMove(known, currentGameId));
+      return;
+    }
+    aiThinking = true;
     final Board snapshot = board.copy();
+    final int depth = selectedDifficulty.searchDepth();
 
-    SwingWorker<Move, Void> worker =
+    SwingWorker<Move, SearchUpdate> worker =
         new SwingWorker<>() {
           @Override
           protected Move doInBackground() {
-            return ai.chooseMove(snapshot, PlayerColor.BLACK, selectedDifficulty);
+            ChessAI ai = engine.join();
+            // a cancelled search may still be unwinding; the engine runs one search at a time
+            synchronized (ai) {
+              if (isCancelled()) return null;
+              long start = System.nanoTime();
+              return ai.analyze(
+                  snapshot,
+                  PlayerColor.BLACK,
+                  depth,
+                  (completed, best, score, nodes) -> {
+                    long nanos = Math.max(1L, System.nanoTime() - start);
+                    publish(
+                        new SearchUpdate(
+                            completed,
+                            -score,
+                            formatLine(snapshot, ai.principalVariation()),
+                            nodes,
+                            nodes * 1_000_000_000L / nanos));
+                  });
+            }
+          }
+
+          @Override
+          protected void process(List<SearchUpdate> updates) {
+            if (currentGameId == gameId) {
+              showSearchUpdate(updates.getLast());
+            }
           }
 
           @Override
           protected void done() {
+            if (currentGameId != gameId) {
+              return;
+            }
             aiThinking = false;
-            if (currentGameId != gameId || gameOver || turn != PlayerColor.BLACK) {
+            search = null;
+            if (gameOver || turn != PlayerColor.BLACK) {
               return;
             }
+            flushSearchUpdate();
             try {
               Move aiMove = get();
+              if (!firstAiMoveReported) {
+                firstAiMoveReported = true;
+                reportMetric("time to first AI move", millisSinceLaunch());
+              }
               if (aiMove == null) {
                 updateStatus(null);
                 return;
               }
-              board.applyMove(aiMove);
-              turn = PlayerColor.WHITE;
-              selR = selC = -1;
-              legalTargets.clear();
-              updateBoardUI();
-              updateStatus(aiMove);
+              analysedMoves.put(key, aiMove);
+              playComputerMove(aiMove, currentGameId);
             } catch (Exception ex) {
               JOptionPane.showMessageDialog(frame, "Computer move failed: " + ex.getMessage());
             }
           }
         };
+    search = worker;
+    worker.execute();
+  }
+
+  /**
+   * Reviews the moves played so far in a separate window. Annotations stream in as the annotator
+   * finishes them, and questionable moves are also marked in the move list while it still shows
+   * the reviewed line. Selecting a reviewed move shows the position before it. One review runs at
+   * a time: the button is disabled until it finishes or is cancelled by closing its window or
+   * starting a new game.
+   */
+  private void reviewGame() {
+    if (line.size() == 0) {
+      JOptionPane.showMessageDialog(frame, "Play a few moves before reviewing the game.");
+      return;
+    }
+    if (review != null) {
+      review.cancel(true);
+    }
+    final Board start = startFen == null ? new Board() : Board.fromFen(startFen);
+    final int[] codes = new int[line.size()];
+    final List<Move> moves = new ArrayList<>(codes.length);
+    final String[] labels = new String[codes.length];
+    DefaultListModel<String> rows = new DefaultListModel<>();
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = line.code(i);
+      moves.add(line.get(i));
+      labels[i] = stripAnnotation(moveListModel.get(i));
+      rows.addElement(labels[i] + "  ...");
+    }
+
+    JDialog dialog = new JDialog(frame, "Game Review", false);
+    JLabel progress = new JLabel("Analysing " + codes.length + " moves...");
+    progress.setBorder(new EmptyBorder(8, 12, 8, 12));
+    JList<String> rowList = new JList<>(rows);
+    rowList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    rowList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    rowList.addListSelectionListener(
+        e -> {
+          int ply = rowList.getSelectedIndex();
+          if (!e.getValueIsAdjusting() && ply >= 0 && showsReviewedLine(codes, ply + 1)) {
+            goToPly(ply);
+          }
+        });
+    dialog.add(progress, BorderLayout.NORTH);
+    JScrollPane rowScroll = new JScrollPane(rowList);
+    rowScroll.setPreferredSize(new Dimension(520, 420));
+    dialog.add(rowScroll, BorderLayout.CENTER);
+
+    SwingWorker<List<GameAnnotator.Annotation>, GameAnnotator.Annotation> worker =
+        new SwingWorker<>() {
+          @Override
+          protected List<GameAnnotator.Annotation> doInBackground() throws InterruptedException {
+            return annotator().annotate(start, moves, this::publish);
+          }
+
+          @Override
+          protected void process(List<GameAnnotator.Annotation> chunks) {
+            for (GameAnnotator.Annotation a : chunks) {
+              String label = labels[a.ply()] + a.judgement().symbol();
+              StringBuilder row = new StringBuilder(label);
+              row.append(" ".repeat(Math.max(2, 18 - label.length())));
+              row.append(GameAnnotator.formatScore(a.whiteScore()));
+              if (a.judgement().compareTo(GameAnnotator.Judgement.INACCURACY) >= 0) {
+                row.append("  ").append(a.judgement()).append(", best ").append(a.bestLine());
+              }
+              rows.set(a.ply(), row.toString());
+              if (showsReviewedLine(codes, a.ply() + 1)) {
+                moveListModel.set(a.ply(), label);
+              }
+            }
+          }
+
+          @Override
+          protected void done() {
+            reviewButton.setEnabled(true);
+            if (isCancelled()) {
+              progress.setText("Review cancelled.");
+              return;
+            }
+            try {
+              progress.setText(GameAnnotator.summary(get()));
+            } catch (Exception ex) {
+              progress.setText("Review failed: " + ex.getMessage());
+            }
+          }
+        };
+    review = worker;
+    dialog.addWindowListener(
+        new java.awt.event.WindowAdapter() {
+          @Override
+          public void windowClosed(java.awt.event.WindowEvent e) {
+            worker.cancel(true);
+          }
+        });
+    dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+    dialog.pack();
+    dialog.setLocationRelativeTo(frame);
+    dialog.setVisible(true);
+    reviewButton.setEnabled(false);
     worker.execute();
   }
 
+  private synchronized GameAnnotator annotator() {
+    if (annotator == null) {
+      annotator =
+          new GameAnnotator(
+              GameAnnotator.DEFAULT_DEPTH, Runtime.getRuntime().availableProcessors());
+    }
+    return annotator;
+  }
+
+  /** Whether the first {@code plies} moves of the current line are those of a review. */
+  private boolean showsReviewedLine(int[] codes, int plies) {
+    if (plies > line.size() || plies > codes.length) {
+      return false;
+    }
+    for (int i = 0; i < plies; i++) {
+      if (line.code(i) != codes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String stripAnnotation(String label) {
+    return label.replaceFirst("[?!]+$", "");
+  }
+
+  /**
+   * Shows a search result at most once per {@link #SEARCH_UPDATE_MILLIS}: the first update is
+   * shown at once, and any arriving while the timer runs only replace the pending one, which the
+   * timer then shows. However fast the search reports, the EDT repaints a few times a second.
+   */
+  private void showSearchUpdate(SearchUpdate update) {
+    pendingUpdate = update;
+    if (!searchUpdateTimer.isRunning()) {
+      flushSearchUpdate();
+    }
+  }
+
+  private void flushSearchUpdate() {
+    SearchUpdate update = pendingUpdate;
+    if (update == null) {
+      return;
+    }
+    pendingUpdate = null;
+    evalBar.setScore(update.whiteScore());
+    searchInfo.setText(
+        String.format(
+            "Depth %d   %s   %,d nodes   %,d n/s",
+            update.depth(),
+            GameAnnotator.formatScore(update.whiteScore()),
+            update.nodes(),
+            update.nps()));
+    principalVariation.setText(
+        "<html><div style='text-align:center;width:170px;'>" + update.pv() + "</div></html>");
+    searchUpdateTimer.restart();
+  }
+
+  private void clearSearchInfo() {
+    pendingUpdate = null;
+    searchUpdateTimer.stop();
+    evalBar.setScore(0.0);
+    searchInfo.setText("Depth -   +0.00");
+    principalVariation.setText(" ");
+  }
+
+  /** {@code moves} in SAN with move numbers, such as {@code 12... Nf6 13. Bg5}. */
+  private static String formatLine(Board start, List<Move> moves) {
+    StringBuilder sb = new StringBuilder();
+    Board position = start.copy();
+    for (Move move : moves) {
+      boolean white = position.sideToMove() == PlayerColor.WHITE;
+      if (white || sb.isEmpty()) {
+        if (!sb.isEmpty()) {
+          sb.append(' ');
+        }
+        sb.append(position.fullmoveNumber()).append(white ? ". " : "... ");
+      } else {
+        sb.append(' ');
+      }
+      San.appendTo(sb, position, move);
+      position.applyMove(move);
+    }
+    return sb.toString();
+  }
+
+  private void playComputerMove(Move aiMove, long forGameId) {
+    if (forGameId != gameId || gameOver || turn != PlayerColor.BLACK) {
+      return;
+    }
+    playMove(aiMove);
+    turn = PlayerColor.WHITE;
+    selR = selC = -1;
+    legalTargets = 0L;
+    updateBoardUI();
+    boardView.animate(aiMove, null);
+    updateStatus(aiMove);
+  }
+
   private String toSquareName(int r, int c) {
     char file = (char) ('a' + c);
     int rank = 8 - r;
@@ -571,6 +1068,42 @@ public class ChessGUI {
     SwingUtilities.invokeLater(ChessGUI::new);
   }
 
+  /** A vertical bar whose light part grows with White's advantage, White at the bottom. */
+  private static class EvalBar extends JComponent {
+    private static final java.awt.Color WHITE_SIDE = new java.awt.Color(238, 242, 255);
+    private static final java.awt.Color BLACK_SIDE = new java.awt.Color(32, 37, 54);
+
+    private double whiteScore;
+
+    EvalBar() {
+      setPreferredSize(new Dimension(26, 0));
+    }
+
+    void setScore(double whiteScore) {
+      this.whiteScore = whiteScore;
+      repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+      java.awt.Insets insets = getInsets();
+      int x = insets.left;
+      int y = insets.top;
+      int width = getWidth() - insets.left - insets.right;
+      int height = getHeight() - insets.top - insets.bottom;
+      // a logistic curve, so a pawn moves the bar a lot near equality and little when winning
+      int light = (int) Math.round(height / (1.0 + Math.exp(-0.6 * whiteScore)));
+      Graphics2D g2 = (Graphics2D) g.create();
+      g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g2.clip(new java.awt.geom.RoundRectangle2D.Float(x, y, width, height, 8, 8));
+      g2.setColor(BLACK_SIDE);
+      g2.fillRect(x, y, width, height - light);
+      g2.setColor(WHITE_SIDE);
+      g2.fillRect(x, y + height - light, width, light);
+      g2.dispose();
+    }
+  }
+
   private static class GradientPanel extends JPanel {
     private final java.awt.Color start;
     private final java.awt.Color end;
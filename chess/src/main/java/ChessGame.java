@@ -1,32 +1,52 @@
-import java.util.List;
 import java.util.Scanner;
 
 public class ChessGame {
-    private final Board board;
+    private Board board;
     private final Scanner scanner;
+    private final GameLog log;
     private PlayerColor turn;
 
     public ChessGame(Scanner scanner) {
+        this(scanner, null);
+    }
+
+    /** Records every move in {@code log}, which may be null, and resumes its unfinished game. */
+    public ChessGame(Scanner scanner, GameLog log) {
         this.board = new Board();
         this.scanner = scanner;
+        this.log = log;
         this.turn = PlayerColor.WHITE;
     }
 
     public void play() {
+        resumeOrStartRecording();
         System.out.println("Simple Console Chess (no en-passant). Moves like: e2e4 or e2 e4. Castle by moving the king two squares. Type 'resign' to resign.");
         while (true) {
             board.print();
             if (board.isAutomaticDrawByInsufficientMaterial()) {
                 System.out.println("Draw by insufficient material.");
+                recordResult(PgnReader.DRAW);
+                break;
+            }
+            if (board.isThreefoldRepetition()) {
+                System.out.println("Draw by threefold repetition.");
+                recordResult(PgnReader.DRAW);
+                break;
+            }
+            if (board.isFiftyMoveDraw()) {
+                System.out.println("Draw by the fifty-move rule.");
+                recordResult(PgnReader.DRAW);
                 break;
             }
             System.out.println((turn == PlayerColor.WHITE ? "White" : "Black") + " to move.");
-            List<Move> legal = board.generateLegalMoves(turn);
+            LegalMoveIndex legal = board.legalMoveIndex(turn);
             if (legal.isEmpty()) {
                 if (board.isKingInCheck(turn)) {
                     System.out.println("Checkmate! " + (turn == PlayerColor.WHITE ? "Black" : "White") + " wins.");
+                    recordResult(turn == PlayerColor.WHITE ? PgnReader.BLACK_WINS : PgnReader.WHITE_WINS);
                 } else {
                     System.out.println("Stalemate! It's a draw.");
+                    recordResult(PgnReader.DRAW);
                 }
                 break;
             }
@@ -38,6 +58,7 @@ public class ChessGame {
             line = line.trim();
             if (line.equalsIgnoreCase("resign")) {
                 System.out.println((turn == PlayerColor.WHITE ? "White" : "Black") + " resigns. " + (turn == PlayerColor.WHITE ? "Black" : "White") + " wins.");
+                recordResult(turn == PlayerColor.WHITE ? PgnReader.BLACK_WINS : PgnReader.WHITE_WINS);
                 break;
             }
             if (line.equalsIgnoreCase("quit") || line.equalsIgnoreCase("exit")) {
@@ -62,18 +83,14 @@ public class ChessGame {
                 System.out.println("That piece isn't yours.");
                 continue;
             }
-            boolean found = false;
-            for (Move legalMove : legal) {
-                if (legalMove.fr == move.fr && legalMove.fc == move.fc && legalMove.tr == move.tr && legalMove.tc == move.tc) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
+            if (!legal.isLegal(move)) {
                 System.out.println("Illegal move.");
                 continue;
             }
             board.applyMove(move);
+            if (log != null) {
+                log.appendMove(move);
+            }
             PlayerColor opponent = turn.opponent();
             if (board.isKingInCheck(opponent)) {
                 System.out.println("Check!");
@@ -82,6 +99,27 @@ public class ChessGame {
         }
     }
 
+    /** Quitting leaves the game open in the log, so the next session picks it up here. */
+    private void resumeOrStartRecording() {
+        if (log == null) {
+            return;
+        }
+        GameRecord unfinished = log.unfinishedGame();
+        if (unfinished == null) {
+            log.startGame(null);
+        } else if (unfinished.moves().size() > 0) {
+            board = unfinished.replay();
+            turn = board.sideToMove();
+            System.out.println("Resuming the unfinished game from the last session (" + unfinished.moves().size() + " moves played).");
+        }
+    }
+
+    private void recordResult(int result) {
+        if (log != null) {
+            log.endGame(result);
+        }
+    }
+
     private static Move parseMove(String input) {
         input = input.trim().replaceAll("\\s+", "");
         if (input.length() != 4) return null;
@@ -0,0 +1,345 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits perft or analysis jobs into work units and runs them on worker JVMs started on this
+ * host. Workers connect back over a loopback socket and take one unit at a time. When no work
+ * is left to hand out, an idle worker also takes a copy of the longest-running unit, and the
+ * first result that arrives wins, so one slow worker cannot hold up the whole job. A unit whose
+ * worker dies goes back in the queue.
+ *
+ * <p>Perft is split by root move; analysis takes one position (FEN or EPD) per line of a file.
+ *
+ * <pre>
+ *   Coordinator perft &lt;depth&gt; [workers] [fen]
+ *   Coordinator analyze &lt;positions&gt; &lt;depth&gt; [workers]
+ * </pre>
+ */
+public final class Coordinator {
+  /** A unit is only duplicated once it has run this much longer than the average unit. */
+  private static final double SPECULATION_FACTOR = 1.5;
+  /** How long workers get to connect back before the job runs without the missing ones. */
+  private static final long WORKER_START_MILLIS = 30_000;
+  private static final int ACCEPT_POLL_MILLIS = 500;
+
+  static final class Unit {
+    final int id;
+    final String label;
+    final String command;
+    String result;
+    int running;
+    long startedNanos;
+
+    Unit(int id, String label, String command) {
+      this.id = id;
+      this.label = label;
+      this.command = command;
+    }
+  }
+
+  private final List<Unit> units;
+  private final ArrayDeque<Unit> pending;
+  private int completed;
+  private int liveLinks;
+  private long completedNanos;
+  private int speculative;
+  private int requeued;
+
+  Coordinator(List<Unit> units) {
+    this.units = units;
+    this.pending = new ArrayDeque<>(units);
+  }
+
+  /** Runs every unit on {@code workers} worker processes and returns the units with results. */
+  List<Unit> run(int workers) throws IOException, InterruptedException {
+    List<Process> processes = new ArrayList<>();
+    List<Thread> links = new ArrayList<>();
+    try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+      for (int i = 0; i < workers; i++) {
+        processes.add(startWorker(server.getLocalPort()));
+      }
+      server.setSoTimeout(ACCEPT_POLL_MILLIS);
+      long deadline = System.nanoTime() + WORKER_START_MILLIS * 1_000_000;
+      while (links.size() < workers) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketTimeoutException ex) {
+          // stop waiting once every worker still running has connected, or on the deadline
+          long alive = processes.stream().filter(Process::isAlive).count();
+          if (alive <= links.size() || System.nanoTime() > deadline) break;
+          continue;
+        }
+        synchronized (this) {
+          liveLinks++;
+        }
+        links.add(
+            Thread.ofPlatform().name("worker-link-" + links.size()).start(() -> serve(socket)));
+      }
+      if (links.isEmpty()) {
+        throw new IOException("No worker connected within " + WORKER_START_MILLIS + " ms");
+      }
+      if (links.size() < workers) {
+        System.err.printf("Only %d of %d workers started%n", links.size(), workers);
+      }
+      awaitCompletion();
+    } finally {
+      // workers still busy with a duplicate of a finished unit are not waited for
+      for (Process process : processes) process.destroyForcibly();
+    }
+    for (Thread link : links) link.join();
+    synchronized (this) {
+      if (completed < units.size()) {
+        throw new IOException((units.size() - completed) + " work units did not complete");
+      }
+    }
+    return units;
+  }
+
+  private synchronized void awaitCompletion() throws InterruptedException {
+    while (completed < units.size() && liveLinks > 0) wait();
+  }
+
+  private static Process startWorker(int port) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(ProcessHandle.current().info().command().orElse("java"));
+    command.addAll(forwardedJvmArguments(ManagementFactory.getRuntimeMXBean().getInputArguments()));
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(Coordinator.class.getName());
+    command.add("worker");
+    command.add(String.valueOf(port));
+    return new ProcessBuilder(command).inheritIO().start();
+  }
+
+  /**
+   * The coordinator's JVM options that workers also need: modules, heap size and system
+   * properties. Debugger agents, JMX ports and the like are left out, since a second process
+   * would clash with the first over the same port.
+   */
+  static List<String> forwardedJvmArguments(List<String> arguments) {
+    List<String> forwarded = new ArrayList<>();
+    for (int i = 0; i < arguments.size(); i++) {
+      String argument = arguments.get(i);
+      if (argument.equals("--add-modules") && i + 1 < arguments.size()) {
+        forwarded.add(argument);
+        forwarded.add(arguments.get(++i));
+      } else if (argument.startsWith("--add-modules=")
+          || argument.startsWith("-Xmx")
+          || argument.startsWith("-Xms")
+          || (argument.startsWith("-D") && !argument.startsWith("-Dcom.sun.management"))) {
+        forwarded.add(argument);
+      }
+    }
+    return forwarded;
+  }
+
+  /** Feeds one worker until every unit has a result or the worker goes away. */
+  private void serve(Socket socket) {
+    Unit unit = null;
+    try (socket;
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out =
+            new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+      while ((unit = next()) != null) {
+        out.println(unit.id + " " + unit.command);
+        String reply = in.readLine();
+        if (reply == null) break;
+        int space = reply.indexOf(' ');
+        complete(unit, reply.substring(space + 1));
+        unit = null;
+      }
+      out.println("quit");
+    } catch (IOException ex) {
+      if (!isDone()) System.err.println("Worker link failed: " + ex.getMessage());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      linkClosed(unit);
+    }
+  }
+
+  private synchronized boolean isDone() {
+    return completed == units.size();
+  }
+
+  private synchronized Unit next() throws InterruptedException {
+    while (completed < units.size()) {
+      Unit unit = pending.poll();
+      if (unit == null) unit = slowestRunning();
+      if (unit != null) {
+        if (unit.running++ == 0) unit.startedNanos = System.nanoTime();
+        return unit;
+      }
+      wait(20);
+    }
+    return null;
+  }
+
+  /** Returns a unit worth duplicating on an idle worker, or null. */
+  private Unit slowestRunning() {
+    if (completed == 0) return null;
+    double threshold = SPECULATION_FACTOR * completedNanos / completed;
+    long now = System.nanoTime();
+    Unit slowest = null;
+    for (Unit unit : units) {
+      if (unit.result != null || unit.running != 1 || now - unit.startedNanos < threshold) continue;
+      if (slowest == null || unit.startedNanos < slowest.startedNanos) slowest = unit;
+    }
+    if (slowest != null) speculative++;
+    return slowest;
+  }
+
+  private synchronized void complete(Unit unit, String result) {
+    unit.running--;
+    if (unit.result != null) return;
+    unit.result = result;
+    completed++;
+    completedNanos += System.nanoTime() - unit.startedNanos;
+    notifyAll();
+  }
+
+  /** Puts the unit the closed link was working on, if any, back in the queue. */
+  private synchronized void linkClosed(Unit unit) {
+    liveLinks--;
+    if (unit != null && --unit.running == 0 && unit.result == null) {
+      pending.addFirst(unit);
+      requeued++;
+    }
+    notifyAll();
+  }
+
+  /** Worker side: executes units until the coordinator says {@code quit}. */
+  private static void work(int port) throws IOException {
+    ChessAI ai = new ChessAI();
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out =
+            new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = in.readLine()) != null && !line.equals("quit")) {
+        String[] parts = line.split(" ", 4);
+        String id = parts[0];
+        int depth = Integer.parseInt(parts[2]);
+        Board board = Board.fromFen(parts[3]);
+        String result;
+        if (parts[1].equals("perft")) {
+          result = String.valueOf(Perft.perft(board, depth));
+        } else {
+          Move best = ai.chooseMove(board, board.sideToMove(), depth);
+          result =
+              best == null
+                  ? "(none) 0 " + ai.nodes()
+                  : San.format(board, best)
+                      + " "
+                      + String.format(Locale.ROOT, "%.2f", ai.lastScore())
+                      + " "
+                      + ai.nodes();
+        }
+        out.println(id + " " + result);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    String mode = args.length > 0 ? args[0] : "";
+    int cores = Runtime.getRuntime().availableProcessors();
+    switch (mode) {
+      case "worker" -> work(Integer.parseInt(args[1]));
+      case "perft" -> {
+        int depth = Integer.parseInt(args[1]);
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+        Board root = args.length > 3 ? Board.fromFen(args[3]) : new Board();
+        if (depth < 2) throw new IllegalArgumentException("depth must be at least 2");
+        List<Unit> units = new ArrayList<>();
+        for (Move move : root.legalMoveIndex(root.sideToMove()).moves()) {
+          Board child = root.copy();
+          child.applyMove(move);
+          units.add(
+              new Unit(
+                  units.size(),
+                  San.format(root, move),
+                  "perft " + (depth - 1) + " " + child.toFen()));
+        }
+        long start = System.nanoTime();
+        Coordinator coordinator = new Coordinator(units);
+        long total = 0;
+        for (Unit unit : coordinator.run(workers)) {
+          long count = Long.parseLong(unit.result);
+          System.out.printf("%-7s %,d%n", unit.label, count);
+          total += count;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(
+            "%nperft(%d) = %,d in %.2fs on %d workers (%,.0f nodes/s)%n",
+            depth, total, seconds, workers, total / seconds);
+        coordinator.printSchedulingStats();
+      }
+      case "analyze" -> {
+        int depth = Integer.parseInt(args[2]);
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : cores;
+        List<Unit> units = new ArrayList<>();
+        for (String line : Files.readAllLines(Path.of(args[1]))) {
+          if (line.isBlank() || line.startsWith("#")) continue;
+          String fen = Board.fromFen(positionFields(line)).toFen();
+          units.add(new Unit(units.size(), fen, "analyze " + depth + " " + fen));
+        }
+        long start = System.nanoTime();
+        Coordinator coordinator = new Coordinator(units);
+        long nodes = 0;
+        for (Unit unit : coordinator.run(workers)) {
+          String[] fields = unit.result.split(" ");
+          System.out.printf(
+              "%-7s %6s %,10d  %s%n", fields[0], fields[1], Long.parseLong(fields[2]), unit.label);
+          nodes += Long.parseLong(fields[2]);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(
+            "%nAnalysed %d positions at depth %d in %.2fs on %d workers (%,.0f nodes/s)%n",
+            units.size(), depth, seconds, workers, nodes / seconds);
+        coordinator.printSchedulingStats();
+      }
+      default ->
+          System.out.println(
+              "Usage: Coordinator perft <depth> [workers] [fen]\n"
+                  + "       Coordinator analyze <positions> <depth> [workers]");
+    }
+  }
+
+  /** The FEN part of a FEN or EPD line: six fields if there are move counters, else four. */
+  private static String positionFields(String line) {
+    String[] fields = line.trim().split("\\s+");
+    boolean counters =
+        fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+");
+    int count = Math.min(fields.length, counters ? 6 : 4);
+    return String.join(" ", List.of(fields).subList(0, count));
+  }
+
+  private synchronized void printSchedulingStats() {
+    System.out.println(
+        units.size()
+            + " units, "
+            + speculative
+            + " speculative re-dispatches, "
+            + requeued
+            + " re-queued after worker loss");
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Evaluators for endings the generic evaluation handles badly, chosen by {@link
+ * Board#materialKey()}: an exact king and pawn versus king bitbase, a mating-net score for king,
+ * bishop and knight versus king, and a damping factor for opposite-coloured bishops. Scores are in
+ * pawns from White's point of view.
+ */
+final class Endgames {
+  /**
+   * Base score of a won bishop-and-knight ending: the two pieces' material. The mating-net bonus
+   * on top stays under {@link #MATING_NET_MAX}, so KBNK never outscores a larger material balance
+   * and a lone king defending against more than that still takes any piece it can.
+   */
+  static final double KBN_MATERIAL =
+      Board.exchangeValue(PieceType.BISHOP) + Board.exchangeValue(PieceType.KNIGHT);
+
+  static final double MATING_NET_MAX = 1.5;
+
+  /**
+   * Score of a won king and pawn ending before the pawn-advance bonus. Kept below a queen so that
+   * promoting is always preferred to shuffling in a won position.
+   */
+  static final double KPK_WIN = 2.0;
+
+  private static final long WHITE_KPK = Board.materialKey("KPk");
+  private static final long BLACK_KPK = Board.materialKey("Kkp");
+  private static final long WHITE_KBNK = Board.materialKey("KBNk");
+  private static final long BLACK_KBNK = Board.materialKey("Kkbn");
+  private static final long KINGS_AND_PAWNS = Board.materialKey("KkPp") * 15;
+  private static final long ONE_BISHOP_EACH = Board.materialKey("Bb");
+
+  private Endgames() {}
+
+  /** True when {@link #evaluate} is exact, so searching below this position is pointless. */
+  static boolean isExact(Board board) {
+    long key = board.materialKey();
+    return key == WHITE_KPK || key == BLACK_KPK;
+  }
+
+  /** Returns White's score from a specialised evaluator, or NaN if none applies. */
+  static double evaluate(Board board) {
+    long key = board.materialKey();
+    if (key == WHITE_KPK) return kpk(board, PlayerColor.WHITE);
+    if (key == BLACK_KPK) return -kpk(board, PlayerColor.BLACK);
+    if (key == WHITE_KBNK) return kbnk(board, PlayerColor.WHITE);
+    if (key == BLACK_KBNK) return -kbnk(board, PlayerColor.BLACK);
+    return Double.NaN;
+  }
+
+  /** Factor for the generic evaluation: 0.5 with only opposite-coloured bishops and pawns. */
+  static double scale(Board board) {
+    long pieces = board.materialKey() & ~KINGS_AND_PAWNS;
+    if (pieces == ONE_BISHOP_EACH
+        && board.lightSquareBishops(PlayerColor.WHITE)
+            != board.lightSquareBishops(PlayerColor.BLACK)) {
+      return 0.5;
+    }
+    return 1.0;
+  }
+
+  /** Score for the side with the pawn, seen with that side moving up the board as White. */
+  private static double kpk(Board board, PlayerColor strong) {
+    int strongKing = -1;
+    int weakKing = -1;
+    int pawn = -1;
+    for (int sq = 0; sq < 64; sq++) {
+      Piece piece = board.at(sq / 8, sq % 8);
+      if (piece == null) continue;
+      // mirror ranks when Black has the pawn so that it always moves towards row 0
+      int normalized = strong == PlayerColor.WHITE ? sq : sq ^ 56;
+      if (piece.getType() == PieceType.PAWN) {
+        pawn = normalized;
+      } else if (piece.getColor() == strong) {
+        strongKing = normalized;
+      } else {
+        weakKing = normalized;
+      }
+    }
+    int toMove = board.sideToMove() == strong ? 0 : 1;
+    if (!Kpk.isWin(toMove, strongKing, weakKing, pawn)) return 0.0;
+    return KPK_WIN + 0.5 * (6 - pawn / 8);
+  }
+
+  /** Drives the weak king towards a corner the bishop controls and brings the kings together. */
+  private static double kbnk(Board board, PlayerColor strong) {
+    int strongKing = -1;
+    int weakKing = -1;
+    for (int sq = 0; sq < 64; sq++) {
+      Piece piece = board.at(sq / 8, sq % 8);
+      if (piece != null && piece.getType() == PieceType.KING) {
+        if (piece.getColor() == strong) {
+          strongKing = sq;
+        } else {
+          weakKing = sq;
+        }
+      }
+    }
+    int r = weakKing / 8;
+    int c = weakKing % 8;
+    // light corners are a8 and h1, dark corners h8 and a1
+    int corner =
+        board.lightSquareBishops(strong) > 0
+            ? Math.min(r + c, 14 - r - c)
+            : Math.min(r + 7 - c, 7 - r + c);
+    // corner is at most 7 and the kings at least 2 apart
+    double net = 0.8 * (7 - corner) / 7.0 + 0.2 * (7 - distance(strongKing, weakKing)) / 5.0;
+    return KBN_MATERIAL + MATING_NET_MAX * net;
+  }
+
+  private static int distance(int a, int b) {
+    return Math.max(Math.abs(a / 8 - b / 8), Math.abs(a % 8 - b % 8));
+  }
+
+  /**
+   * King and pawn versus king, solved once by retrograde iteration over every placement. White
+   * has the pawn; squares use {@link Board} indexing, so the pawn promotes on row 0. Built on
+   * first use, which takes a fraction of a second.
+   */
+  private static final class Kpk {
+    private static final byte UNKNOWN = 0;
+    private static final byte DRAW = 1;
+    private static final byte WIN = 2;
+    private static final byte INVALID = 3;
+    private static final int[] KING_STEPS = {-9, -8, -7, -1, 1, 7, 8, 9};
+    private static final byte[] RESULTS = build();
+
+    static boolean isWin(int toMove, int whiteKing, int blackKing, int pawn) {
+      return RESULTS[index(toMove, whiteKing, blackKing, pawn)] == WIN;
+    }
+
+    private static int index(int toMove, int whiteKing, int blackKing, int pawn) {
+      return ((toMove * 64 + whiteKing) * 64 + blackKing) * 64 + pawn;
+    }
+
+    private static byte[] build() {
+      byte[] results = new byte[2 * 64 * 64 * 64];
+      for (int i = 0; i < results.length; i++) {
+        results[i] = classify(i >>> 18, (i >>> 12) & 63, (i >>> 6) & 63, i & 63);
+      }
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int i = 0; i < results.length; i++) {
+          if (results[i] != UNKNOWN) continue;
+          byte result = resolve(results, i >>> 18, (i >>> 12) & 63, (i >>> 6) & 63, i & 63);
+          if (result != UNKNOWN) {
+            results[i] = result;
+            changed = true;
+          }
+        }
+      }
+      // whatever White could not force by now is a draw
+      for (int i = 0; i < results.length; i++) {
+        if (results[i] == UNKNOWN) results[i] = DRAW;
+      }
+      return results;
+    }
+
+    /** Settles illegal positions and those decided in one move. */
+    private static byte classify(int toMove, int wk, int bk, int pawn) {
+      int row = pawn / 8;
+      if (row < 1 || row > 6 || wk == bk || wk == pawn || bk == pawn || distance(wk, bk) <= 1) {
+        return INVALID;
+      }
+      if (toMove == 0) {
+        if (pawnAttacks(pawn, bk)) return INVALID;
+        int promotion = pawn - 8;
+        if (row == 1
+            && promotion != wk
+            && promotion != bk
+            && (distance(bk, promotion) > 1 || distance(wk, promotion) == 1)) {
+          return WIN;
+        }
+        return UNKNOWN;
+      }
+      if (distance(bk, pawn) == 1 && distance(wk, pawn) > 1) return DRAW;
+      boolean canMove = false;
+      for (int step : KING_STEPS) {
+        int to = kingStep(bk, step);
+        if (to >= 0 && distance(to, wk) > 1 && !pawnAttacks(pawn, to)) canMove = true;
+      }
+      return !canMove && !pawnAttacks(pawn, bk) ? DRAW : UNKNOWN;
+    }
+
+    /** Decides a position from its successors, or returns UNKNOWN if they are not all known. */
+    private static byte resolve(byte[] results, int toMove, int wk, int bk, int pawn) {
+      boolean allKnown = true;
+      if (toMove == 0) {
+        for (int step : KING_STEPS) {
+          int to = kingStep(wk, step);
+          if (to < 0 || to == pawn || distance(to, bk) <= 1) continue;
+          byte child = results[index(1, to, bk, pawn)];
+          if (child == WIN) return WIN;
+          if (child == UNKNOWN) allKnown = false;
+        }
+        int push = pawn - 8;
+        if (pawn / 8 > 1 && push != wk && push != bk) {
+          byte child = results[index(1, wk, bk, push)];
+          if (child == WIN) return WIN;
+          if (child == UNKNOWN) allKnown = false;
+          int doublePush = push - 8;
+          if (pawn / 8 == 6 && doublePush != wk && doublePush != bk) {
+            child = results[index(1, wk, bk, doublePush)];
+            if (child == WIN) return WIN;
+            if (child == UNKNOWN) allKnown = false;
+          }
+        }
+        return allKnown ? DRAW : UNKNOWN;
+      }
+      for (int step : KING_STEPS) {
+        int to = kingStep(bk, step);
+        if (to < 0 || to == pawn || distance(to, wk) <= 1 || pawnAttacks(pawn, to)) continue;
+        byte child = results[index(0, wk, to, pawn)];
+        if (child == DRAW) return DRAW;
+        if (child == UNKNOWN) allKnown = false;
+      }
+      // no escape at all while in check is mate
+      return allKnown ? WIN : UNKNOWN;
+    }
+
+    /** The square a king reaches from {@code from} by {@code step}, or -1 off the board. */
+    private static int kingStep(int from, int step) {
+      int to = from + step;
+      if (to < 0 || to >= 64 || Math.abs(to % 8 - from % 8) > 1) return -1;
+      return to;
+    }
+
+    private static boolean pawnAttacks(int pawn, int sq) {
+      return sq / 8 == pawn / 8 - 1 && Math.abs(sq % 8 - pawn % 8) == 1;
+    }
+  }
+}
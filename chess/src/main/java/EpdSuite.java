@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves an EPD test suite in parallel with a fixed search depth per position and reports the
+ * solved count and aggregate nodes per second. Positions are judged by their {@code bm} (best
+ * move) and {@code am} (avoid move) operations.
+ *
+ * <pre>
+ *   EpdSuite suite.epd [depth] [threads]
+ * </pre>
+ */
+public class EpdSuite {
+  static final class Entry {
+    final String id;
+    final Board board;
+    final List<String> bestMoves = new ArrayList<>();
+    final List<String> avoidMoves = new ArrayList<>();
+
+    Entry(String id, Board board) {
+      this.id = id;
+      this.board = board;
+    }
+  }
+
+  static final class Result {
+    final Entry entry;
+    final String played;
+    final boolean solved;
+    final long nodes;
+    final long nanos;
+
+    Result(Entry entry, String played, boolean solved, long nodes, long nanos) {
+      this.entry = entry;
+      this.played = played;
+      this.solved = solved;
+      this.nodes = nodes;
+      this.nanos = nanos;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.out.println("Usage: EpdSuite <suite.epd> [depth] [threads]");
+      return;
+    }
+    int depth = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    int threads =
+        args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    List<Entry> entries = new ArrayList<>();
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(Path.of(args[0]))) {
+      lineNumber++;
+      if (line.isBlank() || line.startsWith("#")) continue;
+      try {
+        entries.add(parse(line, "#" + lineNumber));
+      } catch (IllegalArgumentException ex) {
+        System.out.println("Skipping line " + lineNumber + ": " + ex.getMessage());
+      }
+    }
+
+    EvalCache sharedCache = new EvalCache(1 << 20);
+    NnueNetwork network = NnueNetwork.fromSystemProperty();
+    ThreadLocal<ChessAI> engines =
+        ThreadLocal.withInitial(
+            () -> new ChessAI(sharedCache, network, EvalWeights.startup()));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    List<Future<Result>> futures = new ArrayList<>();
+    for (Entry entry : entries) {
+      futures.add(pool.submit(() -> solve(engines.get(), entry, depth)));
+    }
+
+    int solved = 0;
+    long nodes = 0;
+    for (Future<Result> future : futures) {
+      Result result;
+      try {
+        result = future.get();
+      } catch (ExecutionException ex) {
+        System.out.println("Search failed: " + ex.getCause());
+        continue;
+      }
+      if (result.solved) solved++;
+      nodes += result.nodes;
+      Entry entry = result.entry;
+      System.out.printf(
+          "%-4s %-20s played %-7s expected %-12s %,10d nodes %7.1f ms%n",
+          result.solved ? "ok" : "FAIL",
+          entry.id,
+          result.played,
+          describeExpected(entry),
+          result.nodes,
+          result.nanos / 1e6);
+    }
+    pool.shutdown();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf(
+        "%nSolved %d/%d at depth %d on %d threads in %.2fs, %,d nodes, %,.0f nps (cache hit rate %.1f%%)%n",
+        solved,
+        entries.size(),
+        depth,
+        threads,
+        seconds,
+        nodes,
+        nodes / seconds,
+        sharedCache.hitRate() * 100);
+  }
+
+  static Entry parse(String line, String fallbackId) {
+    int i = positionEnd(line);
+    Board board = Board.fromFen(line.substring(0, i));
+    String id = fallbackId;
+    List<String> best = new ArrayList<>();
+    List<String> avoid = new ArrayList<>();
+    for (String op : splitOperations(line.substring(i))) {
+      String[] parts = op.trim().split("\\s+", 2);
+      if (parts.length < 2) continue;
+      switch (parts[0]) {
+        case "bm" -> best.addAll(List.of(parts[1].trim().split("\\s+")));
+        case "am" -> avoid.addAll(List.of(parts[1].trim().split("\\s+")));
+        case "id" -> id = parts[1].trim().replace("\"", "");
+        default -> { }
+      }
+    }
+    if (best.isEmpty() && avoid.isEmpty()) throw new IllegalArgumentException("No bm or am");
+    Entry entry = new Entry(id, board);
+    for (String san : best) entry.bestMoves.add(normalise(board, san));
+    for (String san : avoid) entry.avoidMoves.add(normalise(board, san));
+    return entry;
+  }
+
+  /** Index just past the four position fields that start an EPD record. */
+  static int positionEnd(String line) {
+    int fields = 0;
+    int i = 0;
+    while (i < line.length() && fields < 4) {
+      while (i < line.length() && line.charAt(i) == ' ') i++;
+      while (i < line.length() && line.charAt(i) != ' ') i++;
+      fields++;
+    }
+    if (fields < 4) throw new IllegalArgumentException("Missing EPD fields");
+    return i;
+  }
+
+  static List<String> splitOperations(String ops) {
+    List<String> result = new ArrayList<>();
+    boolean quoted = false;
+    int start = 0;
+    for (int i = 0; i < ops.length(); i++) {
+      char ch = ops.charAt(i);
+      if (ch == '"') quoted = !quoted;
+      if (ch == ';' && !quoted) {
+        result.add(ops.substring(start, i));
+        start = i + 1;
+      }
+    }
+    if (start < ops.length()) result.add(ops.substring(start));
+    return result;
+  }
+
+  private static String normalise(Board board, String san) {
+    Move move = San.parse(board, board.sideToMove(), san);
+    if (move == null) throw new IllegalArgumentException("Illegal move in suite: " + san);
+    return San.format(board, move);
+  }
+
+  private static Result solve(ChessAI ai, Entry entry, int depth) {
+    long start = System.nanoTime();
+    Move move = ai.chooseMove(entry.board.copy(), entry.board.sideToMove(), depth);
+    long nanos = System.nanoTime() - start;
+    String played = move == null ? "(none)" : San.format(entry.board, move);
+    boolean solved =
+        move != null
+            && (entry.bestMoves.isEmpty() || entry.bestMoves.contains(played))
+            && !entry.avoidMoves.contains(played);
+    return new Result(entry, played, solved, ai.nodes(), nanos);
+  }
+
+  private static String describeExpected(Entry entry) {
+    if (!entry.bestMoves.isEmpty()) return String.join(" ", entry.bestMoves);
+    return "not " + String.join(" ", entry.avoidMoves);
+  }
+}
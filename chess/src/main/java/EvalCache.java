@@ -0,0 +1,68 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, direct-mapped cache of evaluation scores keyed by {@link Board#hash()}.
+ *
+ * <p>Each slot holds two longs: {@code key ^ data} and {@code data}. A reader only accepts a slot
+ * whose halves still XOR back to the probed key, so a torn write from another search thread is
+ * seen as a miss instead of a wrong score. Colliding positions simply overwrite each other.
+ * {@link #probe} returns {@code NaN} on a miss.
+ */
+public class EvalCache {
+  private final long[] table;
+  private final int mask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public EvalCache(int entries) {
+    if (entries <= 0 || Integer.bitCount(entries) != 1) {
+      throw new IllegalArgumentException("Entry count must be a positive power of two: " + entries);
+    }
+    this.table = new long[entries * 2];
+    this.mask = entries - 1;
+  }
+
+  public double probe(long key) {
+    int slot = ((int) key & mask) << 1;
+    long check = table[slot];
+    long data = table[slot + 1];
+    if ((check ^ data) != key || (check | data) == 0L) {
+      misses.increment();
+      return Double.NaN;
+    }
+    hits.increment();
+    return Double.longBitsToDouble(data);
+  }
+
+  public void store(long key, double score) {
+    int slot = ((int) key & mask) << 1;
+    long data = Double.doubleToRawLongBits(score);
+    table[slot] = key ^ data;
+    table[slot + 1] = data;
+  }
+
+  public void clear() {
+    Arrays.fill(table, 0L);
+    hits.reset();
+    misses.reset();
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public double hitRate() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0.0 : (double) h / total;
+  }
+}
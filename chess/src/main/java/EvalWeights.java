@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Tunable weights of the classical evaluation. Each weight multiplies one White-minus-Black
+ * feature produced by {@link ChessAI#evaluationFeatures}.
+ */
+public final class EvalWeights {
+  public static final String[] NAMES = {
+    "queen", "rook", "bishop", "knight", "pawn", "mobility", "check"
+  };
+  public static final int COUNT = NAMES.length;
+
+  public static final int QUEEN = 0;
+  public static final int ROOK = 1;
+  public static final int BISHOP = 2;
+  public static final int KNIGHT = 3;
+  public static final int PAWN = 4;
+  public static final int MOBILITY = 5;
+  public static final int CHECK = 6;
+
+  public static final EvalWeights DEFAULT =
+      new EvalWeights(new double[] {9.0, 5.0, 3.25, 3.0, 1.0, 0.05, 0.5});
+
+  private static EvalWeights startup;
+
+  private final double[] values;
+
+  public EvalWeights(double[] values) {
+    if (values.length != COUNT) {
+      throw new IllegalArgumentException("Expected " + COUNT + " weights, got " + values.length);
+    }
+    this.values = values.clone();
+  }
+
+  public double get(int index) {
+    return values[index];
+  }
+
+  public double[] toArray() {
+    return values.clone();
+  }
+
+  public double dot(double[] features) {
+    double sum = 0.0;
+    for (int i = 0; i < COUNT; i++) {
+      sum += values[i] * features[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Weights used by AIs created without explicit weights: the file named by {@code
+   * -Dchess.weights}, else {@code eval-weights.properties} in the working directory, else {@link
+   * #DEFAULT}.
+   */
+  public static synchronized EvalWeights startup() {
+    if (startup == null) {
+      Path path = Path.of(System.getProperty("chess.weights", "eval-weights.properties"));
+      if (Files.isRegularFile(path)) {
+        try {
+          startup = load(path);
+        } catch (IOException | IllegalArgumentException ex) {
+          System.err.println("Ignoring evaluation weights " + path + ": " + ex.getMessage());
+          startup = DEFAULT;
+        }
+      } else {
+        startup = DEFAULT;
+      }
+    }
+    return startup;
+  }
+
+  public static EvalWeights load(Path path) throws IOException {
+    Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(path)) {
+      props.load(reader);
+    }
+    double[] values = DEFAULT.toArray();
+    for (int i = 0; i < COUNT; i++) {
+      String value = props.getProperty(NAMES[i]);
+      if (value != null) {
+        values[i] = Double.parseDouble(value.trim());
+      }
+    }
+    return new EvalWeights(values);
+  }
+
+  public void save(Path path, String comment) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(path)) {
+      writer.write("# " + comment + System.lineSeparator());
+      for (int i = 0; i < COUNT; i++) {
+        writer.write(NAMES[i] + "=" + values[i] + System.lineSeparator());
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < COUNT; i++) {
+      if (i > 0) sb.append(", ");
+      sb.append(NAMES[i]).append('=').append(String.format("%.4f", values[i]));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,345 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reviews a whole game: every move is compared with the engine's best move in the position it
+ * was played from and judged by how much it lost. All positions of the game are searched at once
+ * on a thread pool, each thread with its own {@link ChessAI} and all sharing one transposition
+ * table, and a move's annotation is reported as soon as the positions before and after it are
+ * done. A second pass searches the positions around questionable moves one ply deeper; by then
+ * the table holds the first pass's results for the neighbouring plies, which order those
+ * searches well, so the deeper pass costs little.
+ *
+ * <p>Losses are measured in pawns with scores capped at {@value #SCORE_CAP}, so letting a won
+ * position slip from +14 to +11 is not called a blunder while missing a mate is.
+ *
+ * <pre>
+ *   GameAnnotator games.pgn [depth] [threads]
+ * </pre>
+ *
+ * The command line annotates the first game of the file.
+ */
+public final class GameAnnotator {
+  public static final int DEFAULT_DEPTH = 3;
+
+  private static final double SCORE_CAP = 10.0;
+
+  public enum Judgement {
+    BEST("", 0.0, "best moves"),
+    GOOD("", 0.0, "good moves"),
+    INACCURACY("?!", 0.5, "inaccuracies"),
+    MISTAKE("?", 1.0, "mistakes"),
+    BLUNDER("??", 3.0, "blunders");
+
+    private final String symbol;
+    private final double loss;
+    private final String plural;
+
+    Judgement(String symbol, double loss, String plural) {
+      this.symbol = symbol;
+      this.loss = loss;
+      this.plural = plural;
+    }
+
+    /** The annotation symbol appended to the move, such as {@code ??}; empty for good moves. */
+    public String symbol() {
+      return symbol;
+    }
+
+    static Judgement of(double loss, boolean best) {
+      if (best) return BEST;
+      Judgement judgement = GOOD;
+      for (Judgement j : values()) {
+        if (j.loss > 0 && loss >= j.loss) judgement = j;
+      }
+      return judgement;
+    }
+
+    @Override
+    public String toString() {
+      return name().toLowerCase();
+    }
+  }
+
+  /**
+   * The review of the move at {@code ply} (from 0). {@code whiteScore} is the position after the
+   * move from White's point of view; {@code loss} is in pawns for the side that moved. {@code
+   * bestLine} is the engine's variation from the position before the move, in SAN.
+   */
+  public record Annotation(
+      int ply,
+      Move move,
+      String san,
+      Judgement judgement,
+      double loss,
+      double whiteScore,
+      Move best,
+      String bestLine,
+      int depth) {}
+
+  /** Receives annotations as they complete, on the search threads; a ply may be reported again. */
+  public interface Listener {
+    void annotated(Annotation annotation);
+  }
+
+  /** A searched position: score in pawns for the side to move, best move and its variation. */
+  private record Evaluation(double score, Move best, String line, int depth) {}
+
+  private final EvalCache evalCache = new EvalCache(1 << 20);
+  private final NnueNetwork network;
+  private final EvalWeights weights;
+  private final SearchParams params;
+  private final TranspositionTable table;
+  private final int depth;
+  private final int threads;
+
+  public GameAnnotator(int depth, int threads) {
+    this(
+        NnueNetwork.fromSystemProperty(),
+        EvalWeights.startup(),
+        SearchParams.startup(),
+        TranspositionTable.startup(),
+        depth,
+        threads);
+  }
+
+  /** {@code table} may be null, at the cost of a slower second pass. */
+  public GameAnnotator(
+      NnueNetwork network,
+      EvalWeights weights,
+      SearchParams params,
+      TranspositionTable table,
+      int depth,
+      int threads) {
+    if (depth < 1 || threads < 1) {
+      throw new IllegalArgumentException("Depth and threads must be positive");
+    }
+    this.network = network;
+    this.weights = weights;
+    this.params = params;
+    this.table = table;
+    this.depth = depth;
+    this.threads = threads;
+  }
+
+  /**
+   * Annotates {@code moves} played from {@code start}, reporting each move to {@code listener}
+   * (which may be null) as it completes, and returns the final annotations in game order.
+   * Interrupting the calling thread makes it shut the pool down, which interrupts the searches;
+   * {@link ChessAI} checks for that every few thousand nodes, so they stop promptly and this
+   * method throws InterruptedException.
+   */
+  public List<Annotation> annotate(Board start, List<Move> moves, Listener listener)
+      throws InterruptedException {
+    Board[] positions = new Board[moves.size() + 1];
+    String[] sans = new String[moves.size()];
+    positions[0] = start.copy();
+    for (int i = 0; i < moves.size(); i++) {
+      sans[i] = San.format(positions[i], moves.get(i));
+      positions[i + 1] = positions[i].copy();
+      positions[i + 1].applyMove(moves.get(i));
+    }
+    Review review = new Review(positions, moves, sans, listener);
+    ThreadLocal<ChessAI> engines =
+        ThreadLocal.withInitial(() -> new ChessAI(evalCache, network, weights, params, table));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Integer> all = new ArrayList<>();
+      for (int i = 0; i < positions.length; i++) all.add(i);
+      search(pool, engines, review, all, depth);
+
+      // positions on either side of a questionable move, one ply deeper
+      List<Integer> deeper = new ArrayList<>();
+      for (int ply = 0; ply < moves.size(); ply++) {
+        if (review.annotations[ply].judgement().compareTo(Judgement.INACCURACY) >= 0) {
+          if (!deeper.contains(ply)) deeper.add(ply);
+          deeper.add(ply + 1);
+        }
+      }
+      search(pool, engines, review, deeper, depth + 1);
+    } finally {
+      pool.shutdownNow();
+    }
+    return List.of(review.annotations);
+  }
+
+  private static void search(
+      ExecutorService pool,
+      ThreadLocal<ChessAI> engines,
+      Review review,
+      List<Integer> indices,
+      int depth)
+      throws InterruptedException {
+    List<Future<?>> futures = new ArrayList<>();
+    for (int index : indices) {
+      Board board = review.positions[index];
+      futures.add(
+          pool.submit(() -> review.completed(index, evaluate(engines.get(), board, depth))));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        throw new IllegalStateException("Annotation search failed", ex.getCause());
+      }
+    }
+  }
+
+  private static Evaluation evaluate(ChessAI ai, Board board, int depth) {
+    PlayerColor color = board.sideToMove();
+    List<ChessAI.PvLine> lines = ai.searchMultiPv(board, color, depth, 1);
+    if (lines.isEmpty()) {
+      double score = board.isKingInCheck(color) ? Double.NEGATIVE_INFINITY : 0.0;
+      return new Evaluation(score, null, "", depth);
+    }
+    ChessAI.PvLine best = lines.getFirst();
+    StringBuilder sb = new StringBuilder();
+    Board line = board.copy();
+    for (Move move : best.pv) {
+      if (!sb.isEmpty()) sb.append(' ');
+      San.appendTo(sb, line, move);
+      line.applyMove(move);
+    }
+    return new Evaluation(best.score, best.move, sb.toString(), depth);
+  }
+
+  /** Results of one annotation run; completions arrive from the pool threads. */
+  private static final class Review {
+    final Board[] positions;
+    final List<Move> moves;
+    final String[] sans;
+    final Listener listener;
+    final Evaluation[] evaluations;
+    final Annotation[] annotations;
+
+    Review(Board[] positions, List<Move> moves, String[] sans, Listener listener) {
+      this.positions = positions;
+      this.moves = moves;
+      this.sans = sans;
+      this.listener = listener;
+      this.evaluations = new Evaluation[positions.length];
+      this.annotations = new Annotation[moves.size()];
+    }
+
+    synchronized void completed(int index, Evaluation evaluation) {
+      evaluations[index] = evaluation;
+      for (int ply = Math.max(0, index - 1); ply <= Math.min(index, moves.size() - 1); ply++) {
+        Evaluation before = evaluations[ply];
+        Evaluation after = evaluations[ply + 1];
+        if (before == null || after == null) continue;
+        Move move = moves.get(ply);
+        boolean best = before.best() != null && move.encode() == before.best().encode();
+        double loss =
+            best ? 0.0 : Math.max(0.0, capped(before.score()) + capped(after.score()));
+        boolean white = positions[ply].sideToMove() == PlayerColor.WHITE;
+        annotations[ply] =
+            new Annotation(
+                ply,
+                move,
+                sans[ply],
+                Judgement.of(loss, best),
+                loss,
+                white ? -after.score() : after.score(),
+                before.best(),
+                before.line(),
+                Math.min(before.depth(), after.depth()));
+        if (listener != null) listener.annotated(annotations[ply]);
+      }
+    }
+  }
+
+  private static double capped(double score) {
+    return Math.clamp(score, -SCORE_CAP, SCORE_CAP);
+  }
+
+  /** One line per move, with the engine's line after each questionable one. */
+  public static String report(Board start, List<Annotation> annotations) {
+    StringBuilder sb = new StringBuilder();
+    int fullmove = start.fullmoveNumber();
+    boolean white = start.sideToMove() == PlayerColor.WHITE;
+    for (Annotation a : annotations) {
+      String number = fullmove + (white ? ". " : "... ");
+      sb.append(
+          String.format(
+              "%-18s %s", number + a.san() + a.judgement().symbol(), formatScore(a.whiteScore())));
+      if (a.judgement().compareTo(Judgement.INACCURACY) >= 0) {
+        sb.append(
+            String.format("  %s, loses %.2f; best %s", a.judgement(), a.loss(), a.bestLine()));
+      }
+      sb.append(System.lineSeparator());
+      if (!white) fullmove++;
+      white = !white;
+    }
+    return sb.append(summary(annotations)).toString();
+  }
+
+  /** Counts of questionable moves, such as {@code 1 inaccuracy, 2 mistakes, 0 blunders}. */
+  public static String summary(List<Annotation> annotations) {
+    int[] counts = new int[Judgement.values().length];
+    for (Annotation a : annotations) counts[a.judgement().ordinal()]++;
+    StringBuilder sb = new StringBuilder();
+    for (Judgement j : Judgement.values()) {
+      if (j.compareTo(Judgement.INACCURACY) < 0) continue;
+      if (!sb.isEmpty()) sb.append(", ");
+      int n = counts[j.ordinal()];
+      sb.append(n).append(' ').append(n == 1 ? j.toString() : j.plural);
+    }
+    return sb.toString();
+  }
+
+  /** A White-relative score such as {@code +0.35}, or {@code #} with the winning side for mates. */
+  public static String formatScore(double whiteScore) {
+    if (Double.isInfinite(whiteScore)) return whiteScore > 0 ? "+#" : "-#";
+    return String.format("%+.2f", whiteScore);
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.out.println("Usage: GameAnnotator <games.pgn> [depth] [threads]");
+      return;
+    }
+    int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+    int threads =
+        args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    FirstGame game = new FirstGame();
+    PgnReader.read(Path.of(args[0]), game);
+    if (game.start == null) {
+      System.out.println("No game in " + args[0]);
+      return;
+    }
+    long begin = System.nanoTime();
+    List<Annotation> annotations =
+        new GameAnnotator(depth, threads).annotate(game.start, game.moves, null);
+    double seconds = (System.nanoTime() - begin) / 1e9;
+    System.out.println(report(game.start, annotations));
+    System.out.printf(
+        "%d moves at depth %d in %.2fs on %d threads%n",
+        game.moves.size(), depth, seconds, threads);
+  }
+
+  /** Keeps the start position and moves of the first game read. */
+  private static final class FirstGame implements PgnReader.Listener {
+    final List<Move> moves = new ArrayList<>();
+    Board start;
+    boolean done;
+
+    @Override
+    public void move(Board before, Move move) {
+      if (done) return;
+      if (start == null) start = before.copy();
+      moves.add(move);
+    }
+
+    @Override
+    public void endGame(int result, Board board, boolean complete) {
+      if (start == null) start = board.copy();
+      done = true;
+    }
+  }
+}
@@ -0,0 +1,394 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many concurrent games against the engine over local sockets. Every connection is a
+ * session on its own virtual thread holding just a board and a two-byte-per-move history; engine
+ * replies are computed on a shared pool of platform threads. The pool's queue is FIFO and each
+ * session waits for its reply before sending more work, so sessions are served round-robin.
+ *
+ * <p>The protocol is one ASCII line per message. The host greets with {@code ready white}; the
+ * client sends moves such as {@code e2e4} and gets {@code move e7e5}, {@code illegal} or {@code
+ * result <1-0|0-1|1/2-1/2> <reason>} back. {@code fen}, {@code moves}, {@code new} and {@code
+ * quit} are also understood.
+ *
+ * <pre>
+ *   GameHost serve [port] [search-threads] [depth]
+ *   GameHost bench [sessions] [plies] [search-threads] [depth]
+ * </pre>
+ */
+public final class GameHost {
+  private static final int MAX_LINE = 128;
+
+  private final ServerSocket serverSocket;
+  private final ThreadPoolExecutor searchPool;
+  private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+  private final ThreadLocal<ChessAI> engines;
+  private final int depth;
+  private final AtomicInteger activeSessions = new AtomicInteger();
+  private final LongAdder plies = new LongAdder();
+
+  public GameHost(int port, int searchThreads, int depth) throws IOException {
+    this.depth = depth;
+    this.serverSocket = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+    EvalCache evalCache = new EvalCache(1 << 20);
+    NnueNetwork network = NnueNetwork.fromSystemProperty();
+    EvalWeights weights = EvalWeights.startup();
+    this.engines = ThreadLocal.withInitial(() -> new ChessAI(evalCache, network, weights));
+    this.searchPool =
+        new ThreadPoolExecutor(
+            searchThreads, searchThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+  }
+
+  public int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  public int activeSessions() {
+    return activeSessions.get();
+  }
+
+  /** Half-moves played so far by clients and the engine together. */
+  public long plies() {
+    return plies.sum();
+  }
+
+  public void start() {
+    Thread.ofPlatform().daemon().name("game-host-accept").start(this::acceptLoop);
+  }
+
+  public void stop() throws IOException {
+    serverSocket.close();
+    sessions.shutdownNow();
+    searchPool.shutdownNow();
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        sessions.execute(new Session(socket));
+      } catch (IOException ex) {
+        if (!serverSocket.isClosed()) {
+          System.err.println("Accept failed: " + ex.getMessage());
+        }
+      }
+    }
+  }
+
+  private Future<Move> requestMove(Board board, PlayerColor color) {
+    Board position = board.copy();
+    return searchPool.submit(() -> engines.get().chooseMove(position, color, depth));
+  }
+
+  private final class Session implements Runnable {
+    private final Socket socket;
+    private final byte[] line = new byte[MAX_LINE];
+    private InputStream in;
+    private OutputStream out;
+    private Board board = new Board();
+    private final MoveHistory history = new MoveHistory();
+    private boolean over;
+
+    Session(Socket socket) {
+      this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+      activeSessions.incrementAndGet();
+      try (socket) {
+        in = new BufferedInputStream(socket.getInputStream(), MAX_LINE);
+        out = socket.getOutputStream();
+        send("ready white");
+        String command;
+        while ((command = readLine()) != null) {
+          if (!handle(command.trim())) break;
+        }
+      } catch (IOException ex) {
+        // client went away
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } finally {
+        activeSessions.decrementAndGet();
+      }
+    }
+
+    private boolean handle(String command) throws IOException, InterruptedException {
+      switch (command) {
+        case "quit" -> {
+          return false;
+        }
+        case "new" -> {
+          board = new Board();
+          history.clear();
+          over = false;
+          send("ready white");
+        }
+        case "fen" -> send("fen " + board.toFen());
+        case "moves" -> {
+          StringBuilder sb = new StringBuilder("moves ");
+          history.appendCoordinates(sb);
+          send(sb.toString());
+        }
+        default -> playMove(command);
+      }
+      return true;
+    }
+
+    private void playMove(String command) throws IOException, InterruptedException {
+      Move move = parseCoordinates(command);
+      if (move == null) {
+        send("error expected a move like e2e4");
+        return;
+      }
+      if (over || board.sideToMove() != PlayerColor.WHITE) {
+        send("error game is over");
+        return;
+      }
+      if (!board.legalMoveIndex(PlayerColor.WHITE).isLegal(move)) {
+        send("illegal");
+        return;
+      }
+      apply(move);
+      if (reportResult()) return;
+
+      Move reply;
+      try {
+        reply = requestMove(board, PlayerColor.BLACK).get();
+      } catch (ExecutionException ex) {
+        send("error engine failed");
+        return;
+      }
+      apply(reply);
+      StringBuilder sb = new StringBuilder("move ");
+      MoveHistory.appendSquare(sb, reply.fr * 8 + reply.fc);
+      MoveHistory.appendSquare(sb, reply.tr * 8 + reply.tc);
+      send(sb.toString());
+      reportResult();
+    }
+
+    private void apply(Move move) {
+      board.applyMove(move);
+      history.add(move);
+      plies.increment();
+    }
+
+    private boolean reportResult() throws IOException {
+      PlayerColor toMove = board.sideToMove();
+      String result = null;
+      if (board.legalMoveIndex(toMove).isEmpty()) {
+        if (board.isKingInCheck(toMove)) {
+          result = (toMove == PlayerColor.WHITE ? "0-1" : "1-0") + " checkmate";
+        } else {
+          result = "1/2-1/2 stalemate";
+        }
+      } else if (board.isAutomaticDrawByInsufficientMaterial()) {
+        result = "1/2-1/2 insufficient-material";
+      } else if (board.isThreefoldRepetition()) {
+        result = "1/2-1/2 repetition";
+      } else if (board.isFiftyMoveDraw()) {
+        result = "1/2-1/2 fifty-moves";
+      }
+      if (result == null) return false;
+      over = true;
+      send("result " + result);
+      return true;
+    }
+
+    private String readLine() throws IOException {
+      int length = 0;
+      while (true) {
+        int b = in.read();
+        if (b < 0) return length == 0 ? null : new String(line, 0, length, StandardCharsets.US_ASCII);
+        if (b == '\n') return new String(line, 0, length, StandardCharsets.US_ASCII);
+        if (b != '\r' && length < line.length) line[length++] = (byte) b;
+      }
+    }
+
+    private void send(String message) throws IOException {
+      out.write((message + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  static Move parseCoordinates(CharSequence text) {
+    int length = text.length();
+    int start = 0;
+    while (start < length && text.charAt(start) == ' ') start++;
+    if (length - start == 5 && text.charAt(start + 2) == ' ') {
+      return squaresToMove(text, start, start + 3);
+    }
+    return length - start == 4 ? squaresToMove(text, start, start + 2) : null;
+  }
+
+  private static Move squaresToMove(CharSequence text, int from, int to) {
+    int fc = text.charAt(from) - 'a';
+    int fr = '8' - text.charAt(from + 1);
+    int tc = text.charAt(to) - 'a';
+    int tr = '8' - text.charAt(to + 1);
+    if ((fc | fr | tc | tr) < 0 || fc > 7 || fr > 7 || tc > 7 || tr > 7) return null;
+    return new Move(fr, fc, tr, tc);
+  }
+
+  public static void main(String[] args) throws Exception {
+    String mode = args.length > 0 ? args[0] : "";
+    int cores = Runtime.getRuntime().availableProcessors();
+    switch (mode) {
+      case "serve" -> {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8089;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        GameHost host = new GameHost(port, threads, depth);
+        host.start();
+        System.out.println("Hosting games on localhost:" + host.port());
+        Thread.currentThread().join();
+      }
+      case "bench" ->
+          bench(
+              args.length > 1 ? Integer.parseInt(args[1]) : 10_000,
+              args.length > 2 ? Integer.parseInt(args[2]) : 8,
+              args.length > 3 ? Integer.parseInt(args[3]) : cores,
+              args.length > 4 ? Integer.parseInt(args[4]) : 0);
+      case "load" ->
+          load(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+      default ->
+          System.out.println(
+              "Usage: GameHost serve [port] [search-threads] [depth]\n"
+                  + "       GameHost bench [sessions] [plies] [search-threads] [depth]");
+    }
+  }
+
+  /**
+   * Runs the host in this JVM and a client load generator in a child JVM, so the heap measured
+   * here holds only host-side session state.
+   */
+  private static void bench(int sessionCount, int gamePlies, int threads, int depth)
+      throws Exception {
+    GameHost host = new GameHost(0, threads, depth);
+    host.start();
+    long baseline = usedHeapAfterGc();
+    Process client =
+        new ProcessBuilder(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp",
+                System.getProperty("java.class.path"),
+                "GameHost",
+                "load",
+                String.valueOf(host.port()),
+                String.valueOf(sessionCount),
+                String.valueOf(gamePlies))
+            .inheritIO()
+            .start();
+    while (host.activeSessions() < sessionCount && client.isAlive()) {
+      Thread.sleep(10);
+    }
+    long start = System.nanoTime();
+    long startPlies = host.plies();
+    int connected = host.activeSessions();
+    long perSession = (usedHeapAfterGc() - baseline) / Math.max(1, connected);
+    int exit = client.waitFor();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long played = host.plies() - startPlies;
+    host.stop();
+    System.out.printf(
+        "%,d concurrent sessions, %,d bytes of heap per session%n"
+            + "%,d plies in %.1fs: %,.0f moves/s (%d search threads, depth %d)%s%n",
+        connected,
+        perSession,
+        played,
+        seconds,
+        played / seconds,
+        threads,
+        depth,
+        exit == 0 ? "" : ", load generator exited with " + exit);
+  }
+
+  private static long usedHeapAfterGc() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /** Opens {@code sessionCount} connections, then plays random moves on all of them at once. */
+  private static void load(int port, int sessionCount, int gamePlies) throws Exception {
+    CountDownLatch connected = new CountDownLatch(sessionCount);
+    LongAdder failures = new LongAdder();
+    try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < sessionCount; i++) {
+        clients.execute(
+            () -> {
+              try {
+                playRandomGame(port, gamePlies, connected);
+              } catch (IOException | InterruptedException | RuntimeException ex) {
+                failures.increment();
+              }
+            });
+      }
+    }
+    if (failures.sum() > 0) {
+      System.err.println(failures.sum() + " client sessions failed");
+      System.exit(1);
+    }
+  }
+
+  private static void playRandomGame(int port, int gamePlies, CountDownLatch connected)
+      throws IOException, InterruptedException {
+    Socket socket;
+    try {
+      socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    } finally {
+      connected.countDown();
+    }
+    try (socket) {
+      InputStream in = new BufferedInputStream(socket.getInputStream(), MAX_LINE);
+      OutputStream out = socket.getOutputStream();
+      StringBuilder reply = new StringBuilder();
+      readReply(in, reply);
+      connected.await();
+      Board board = new Board();
+      for (int ply = 0; ply < gamePlies; ply += 2) {
+        List<Move> legal = board.legalMoveIndex(PlayerColor.WHITE).moves();
+        Move move = legal.get(ThreadLocalRandom.current().nextInt(legal.size()));
+        StringBuilder sb = new StringBuilder(5);
+        MoveHistory.appendSquare(sb, move.fr * 8 + move.fc);
+        MoveHistory.appendSquare(sb, move.tr * 8 + move.tc);
+        out.write((sb + "\n").getBytes(StandardCharsets.US_ASCII));
+        board.applyMove(move);
+        readReply(in, reply);
+        if (reply.indexOf("result") == 0) break;
+        if (reply.indexOf("move ") != 0) throw new IOException("Unexpected reply: " + reply);
+        board.applyMove(parseCoordinates(reply.subSequence(5, reply.length())));
+        if (board.legalMoveIndex(PlayerColor.WHITE).isEmpty()) break;
+      }
+      out.write("quit\n".getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
+  private static void readReply(InputStream in, StringBuilder reply) throws IOException {
+    reply.setLength(0);
+    int b;
+    while ((b = in.read()) >= 0 && b != '\n') reply.append((char) b);
+    if (b < 0) throw new IOException("Connection closed");
+  }
+}
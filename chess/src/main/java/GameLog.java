@@ -0,0 +1,427 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Append-only log of games in a compact binary format, written through a memory-mapped window so
+ * that every move is in the file as soon as it is played.
+ *
+ * <p>After an 8-byte header the log is a sequence of little-endian 16-bit words. A game is a start
+ * word {@code 0xE000}, with flag bit 0 set when a FEN follows as a length word and the ASCII bytes
+ * padded to an even length; then one {@link Move#encode} code per move; then an end word {@code
+ * 0xF000 | (result + 1)}. Move codes leave the top four bits clear and FEN bytes are ASCII, so a
+ * start word can be recognised from any even offset, which lets the loader split a log between
+ * threads. The unwritten tail of the file is zero; a game without an end word is the one a
+ * crashed or closed session was playing, returned by {@link #unfinishedGame} so it can be resumed.
+ *
+ * <p>A log is written by one thread at a time, and by one process: {@link #open} locks the file
+ * until the log is closed, so a second GUI or console session cannot append over the first.
+ *
+ * <pre>
+ *   GameLog import &lt;games.pgn&gt; &lt;games.log&gt;
+ *   GameLog load &lt;games.log&gt; [threads]
+ * </pre>
+ */
+public final class GameLog implements Closeable {
+  static final int MAGIC = 0x31474C43;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 8;
+  static final int START = 0xE000;
+  static final int END = 0xF000;
+  static final int TAG_MASK = 0xF000;
+  static final int FLAG_FEN = 1;
+  private static final int WRITE_WINDOW = 1 << 20;
+  private static final int READ_WINDOW = 256 << 20;
+
+  /** When written words are forced to the storage device. */
+  public enum FlushPolicy {
+    /** After every word; the game survives an operating system crash or power loss. */
+    EVERY_MOVE,
+    /** When a game ends; moves of the current game survive a crash of the JVM only. */
+    END_OF_GAME,
+    /** Never; write-back is left to the operating system. Intended for bulk imports. */
+    NEVER
+  }
+
+  private final FileChannel channel;
+  private final FlushPolicy flushPolicy;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long end;
+  /** Where the words this session wrote for the open game begin; forced together at its end. */
+  private long gameStart;
+  private GameRecord unfinished;
+  private boolean gameOpen;
+
+  private GameLog(FileChannel channel, FlushPolicy flushPolicy, long end, GameRecord unfinished) {
+    this.channel = channel;
+    this.flushPolicy = flushPolicy;
+    this.end = end;
+    this.unfinished = unfinished;
+    this.gameStart = end;
+    this.gameOpen = unfinished != null;
+  }
+
+  /**
+   * Opens or creates a log; writes are appended after the games already in it. Throws
+   * IOException if another process or another open log in this one holds the file.
+   */
+  public static GameLog open(Path path, FlushPolicy flushPolicy) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException ex) {
+        lock = null;
+      }
+      if (lock == null) throw new IOException(path + " is in use by another session");
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      if (channel.size() == 0) {
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.write(header, 0);
+        return new GameLog(channel, flushPolicy, HEADER_BYTES, null);
+      }
+      channel.read(header, 0);
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException(path + " is not a game log");
+      }
+      int version = header.getInt();
+      if (version != VERSION) throw new IOException("Unsupported game log version " + version);
+      GameRecord last = new GameRecord();
+      boolean[] lastFinished = {true};
+      long end =
+          read(channel, HEADER_BYTES, Long.MAX_VALUE, last, g -> lastFinished[0] = g.finished());
+      return new GameLog(channel, flushPolicy, end, lastFinished[0] ? null : last);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Opens the log named by {@code -Dchess.gamelog} ({@code games.log} by default) with a per-move
+   * flush, or returns null if it cannot be opened.
+   */
+  public static GameLog fromSystemProperty() {
+    Path path = Path.of(System.getProperty("chess.gamelog", "games.log"));
+    try {
+      return open(path, FlushPolicy.EVERY_MOVE);
+    } catch (IOException ex) {
+      System.err.println("Not saving games to " + path + ": " + ex.getMessage());
+      return null;
+    }
+  }
+
+  /** The game left open by an earlier session, or null. Moves appended now continue it. */
+  public GameRecord unfinishedGame() {
+    return unfinished;
+  }
+
+  public boolean isGameOpen() {
+    return gameOpen;
+  }
+
+  /** Bytes in use, including the header. */
+  public long size() {
+    return end;
+  }
+
+  /** Starts a game from {@code fen}, or from the standard position when it is null. */
+  public void startGame(String fen) {
+    if (gameOpen) throw new IllegalStateException("The open game must be ended first");
+    byte[] fenBytes = fen == null ? null : fen.getBytes(StandardCharsets.US_ASCII);
+    if (fenBytes != null && fenBytes.length > 0xFFFF) throw new IllegalArgumentException(fen);
+    int length = fenBytes == null ? 2 : 4 + ((fenBytes.length + 1) & ~1);
+    int p = reserve(length);
+    gameStart = end;
+    if (fenBytes != null) {
+      window.putShort(p + 2, (short) fenBytes.length);
+      window.put(p + 4, fenBytes);
+    }
+    // the start word goes in last, so a torn write still ends the log where it began
+    window.putShort(p, (short) (fenBytes == null ? START : START | FLAG_FEN));
+    commit(p, length, flushPolicy == FlushPolicy.EVERY_MOVE);
+    gameOpen = true;
+  }
+
+  public void appendMove(Move move) {
+    if (!gameOpen) throw new IllegalStateException("No game is open");
+    int p = reserve(2);
+    window.putShort(p, (short) move.encode());
+    commit(p, 2, flushPolicy == FlushPolicy.EVERY_MOVE);
+  }
+
+  /** Ends the open game with one of the {@link PgnReader} result constants. */
+  public void endGame(int result) {
+    if (!gameOpen) throw new IllegalStateException("No game is open");
+    if (result < PgnReader.UNKNOWN || result > PgnReader.WHITE_WINS) {
+      throw new IllegalArgumentException("Bad result " + result);
+    }
+    int p = reserve(2);
+    window.putShort(p, (short) (END | (result + 1)));
+    commit(p, 2, flushPolicy == FlushPolicy.EVERY_MOVE);
+    if (flushPolicy == FlushPolicy.END_OF_GAME) forceGame();
+    gameOpen = false;
+    unfinished = null;
+  }
+
+  /** Returns the window offset for {@code bytes} more, keeping a zero word after them. */
+  private int reserve(int bytes) {
+    if (window == null || end - windowStart + bytes + 2 > window.capacity()) {
+      // the open game's words in the window being left are not forced at its end otherwise
+      if (window != null && gameOpen && flushPolicy == FlushPolicy.END_OF_GAME) forceGame();
+      try {
+        int length = Math.max(WRITE_WINDOW, bytes + 2);
+        window = channel.map(FileChannel.MapMode.READ_WRITE, end, length);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      window.order(ByteOrder.LITTLE_ENDIAN);
+      windowStart = end;
+    }
+    return (int) (end - windowStart);
+  }
+
+  /** Forces the words of the open game in the current window, from its start or the window's. */
+  private void forceGame() {
+    long from = Math.max(gameStart, windowStart);
+    if (end > from) window.force((int) (from - windowStart), (int) (end - from));
+  }
+
+  private void commit(int offset, int bytes, boolean force) {
+    if (force) window.force(offset, bytes);
+    end += bytes;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (window != null && flushPolicy != FlushPolicy.NEVER) window.force();
+    window = null;
+    channel.close();
+  }
+
+  /**
+   * Calls {@code games} for every game in the log, unfinished ones included, reading ranges on
+   * {@code threads} threads with one consumer each.
+   */
+  public static void readParallel(Path path, int threads, Supplier<Consumer<GameRecord>> games)
+      throws IOException, InterruptedException {
+    long size = Files.size(path);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        long from = HEADER_BYTES + ((size - HEADER_BYTES) * i / threads & ~1L);
+        long to =
+            i + 1 == threads
+                ? Long.MAX_VALUE
+                : HEADER_BYTES + ((size - HEADER_BYTES) * (i + 1) / threads & ~1L);
+        Consumer<GameRecord> consumer = games.get();
+        futures.add(
+            pool.submit(
+                () -> {
+                  try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    read(channel, from, to, null, consumer);
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          throw new IOException("Game log reader failed", ex.getCause());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Reads the games starting in {@code [from, to)} into {@code record}, which is reused, and
+   * returns the offset where the log ends or the next range begins. {@code from} may be any even
+   * offset; words before the first start word belong to an earlier range.
+   */
+  private static long read(
+      FileChannel channel, long from, long to, GameRecord record, Consumer<GameRecord> games)
+      throws IOException {
+    if (record == null) record = new GameRecord();
+    long size = channel.size();
+    long position = from;
+    while (true) {
+      long length = Math.min(READ_WINDOW, size - position);
+      if (length < 2) return position;
+      boolean last = position + length == size;
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      int limit = (int) length & ~1;
+      int p = 0;
+      while (p < limit) {
+        int word = buf.getShort(p) & 0xFFFF;
+        if (word == 0) return position + p;
+        if ((word & TAG_MASK) != START) {
+          p += 2;
+          continue;
+        }
+        if (position + p >= to) return position + p;
+        int next = readGame(buf, p, limit, record);
+        if (next < 0) break;
+        games.accept(record);
+        p = next;
+      }
+      if (p == limit) {
+        position += p;
+      } else if (last) {
+        // a game cut off by the end of the file; the writer never leaves one
+        return position + p;
+      } else if (p == 0) {
+        throw new IOException("Corrupt game log at offset " + position);
+      } else {
+        position += p;
+      }
+    }
+  }
+
+  /** Reads the game at {@code p}; returns the offset after it, or -1 if it runs past the window. */
+  private static int readGame(ByteBuffer buf, int p, int limit, GameRecord record) {
+    int q = p + 2;
+    String fen = null;
+    if ((buf.getShort(p) & FLAG_FEN) != 0) {
+      if (q + 2 > limit) return -1;
+      int length = buf.getShort(q) & 0xFFFF;
+      q += 2;
+      if (q + length > limit) return -1;
+      byte[] bytes = new byte[length];
+      buf.get(q, bytes);
+      fen = new String(bytes, StandardCharsets.US_ASCII);
+      q += (length + 1) & ~1;
+    }
+    record.reset(fen);
+    for (; q < limit; q += 2) {
+      int word = buf.getShort(q) & 0xFFFF;
+      int tag = word & TAG_MASK;
+      if (tag == 0 && word != 0) {
+        record.moves().addCode(word);
+      } else if (tag == END) {
+        record.finish((word & ~TAG_MASK) - 1);
+        return q + 2;
+      } else {
+        // the log ends, or a new game starts, without this one having a result
+        return q;
+      }
+    }
+    return -1;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    String mode = args.length > 0 ? args[0] : "";
+    switch (mode) {
+      case "import" -> importPgn(Path.of(args[1]), Path.of(args[2]));
+      case "load" -> {
+        int threads =
+            args.length > 2
+                ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        load(Path.of(args[1]), threads);
+      }
+      default ->
+          System.out.println(
+              "Usage: GameLog import <games.pgn> <games.log>\n"
+                  + "       GameLog load <games.log> [threads]");
+    }
+  }
+
+  private static void importPgn(Path pgn, Path logPath) throws IOException {
+    long start = System.nanoTime();
+    long[] games = new long[1];
+    long before;
+    long after;
+    try (GameLog log = open(logPath, FlushPolicy.NEVER)) {
+      if (log.isGameOpen()) log.endGame(PgnReader.UNKNOWN);
+      before = log.size();
+      PgnReader.read(
+          pgn,
+          new PgnReader.Listener() {
+            @Override
+            public void startGame() {
+              log.startGame(null);
+            }
+
+            @Override
+            public void move(Board board, Move move) {
+              log.appendMove(move);
+            }
+
+            @Override
+            public void endGame(int result, Board board, boolean complete) {
+              log.endGame(complete ? result : PgnReader.UNKNOWN);
+              games[0]++;
+            }
+          });
+      after = log.size();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long pgnBytes = Files.size(pgn);
+    System.out.printf(
+        "Imported %,d games in %.2fs: %,d bytes of PGN (%.0f per game) became %,d bytes"
+            + " (%.0f per game)%n",
+        games[0],
+        seconds,
+        pgnBytes,
+        (double) pgnBytes / games[0],
+        after - before,
+        (double) (after - before) / games[0]);
+  }
+
+  private static void load(Path path, int threads) throws IOException, InterruptedException {
+    List<long[]> counters = new ArrayList<>();
+    long start = System.nanoTime();
+    readParallel(
+        path,
+        threads,
+        () -> {
+          long[] counter = new long[2];
+          synchronized (counters) {
+            counters.add(counter);
+          }
+          return game -> {
+            game.replay();
+            counter[0]++;
+            counter[1] += game.moves().size();
+          };
+        });
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long games = 0;
+    long moves = 0;
+    for (long[] counter : counters) {
+      games += counter[0];
+      moves += counter[1];
+    }
+    System.out.printf(
+        "Replayed %,d games, %,d moves in %.2fs on %d threads (%,.0f moves/s, %.2f us per game)%n",
+        games, moves, seconds, threads, moves / seconds, seconds * 1e6 / games);
+  }
+}
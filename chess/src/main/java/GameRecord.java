@@ -0,0 +1,51 @@
+/**
+ * One game as stored in a {@link GameLog}: the start position, the moves as {@link Move#encode}
+ * codes and the result. Records are reused by the bulk loader, so hold on to a copy of anything
+ * needed after the callback returns.
+ */
+public final class GameRecord {
+  private String startFen;
+  private final MoveHistory moves = new MoveHistory();
+  private int result = PgnReader.UNKNOWN;
+  private boolean finished;
+
+  /** FEN of the start position, or null for the standard start position. */
+  public String startFen() {
+    return startFen;
+  }
+
+  public MoveHistory moves() {
+    return moves;
+  }
+
+  /** One of the {@link PgnReader} result constants. */
+  public int result() {
+    return result;
+  }
+
+  /** False for the game a crashed or closed session left without a result. */
+  public boolean finished() {
+    return finished;
+  }
+
+  /** Plays the moves from the start position and returns the final position. */
+  public Board replay() {
+    Board board = startFen == null ? new Board() : Board.fromFen(startFen);
+    for (int i = 0; i < moves.size(); i++) {
+      board.applyMove(moves.get(i));
+    }
+    return board;
+  }
+
+  void reset(String startFen) {
+    this.startFen = startFen;
+    moves.clear();
+    result = PgnReader.UNKNOWN;
+    finished = false;
+  }
+
+  void finish(int result) {
+    this.result = result;
+    finished = true;
+  }
+}
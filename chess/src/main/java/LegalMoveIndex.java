@@ -0,0 +1,48 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable legal moves of one side in one position, indexed by origin square. Square {@code sq}
+ * is {@code r * 8 + c}; bit {@code t} of {@link #targets(int)} is set when {@code sq -> t} is legal.
+ */
+public final class LegalMoveIndex {
+  private final PlayerColor color;
+  private final List<Move> moves;
+  private final long[] targets = new long[64];
+
+  LegalMoveIndex(PlayerColor color, List<Move> moves) {
+    this.color = color;
+    this.moves = Collections.unmodifiableList(moves);
+    for (Move move : moves) {
+      targets[move.fr * 8 + move.fc] |= 1L << (move.tr * 8 + move.tc);
+    }
+  }
+
+  public PlayerColor color() {
+    return color;
+  }
+
+  public List<Move> moves() {
+    return moves;
+  }
+
+  public int size() {
+    return moves.size();
+  }
+
+  public boolean isEmpty() {
+    return moves.isEmpty();
+  }
+
+  public long targets(int fromSquare) {
+    return targets[fromSquare];
+  }
+
+  public boolean isLegal(int fr, int fc, int tr, int tc) {
+    return (targets[fr * 8 + fc] & (1L << (tr * 8 + tc))) != 0;
+  }
+
+  public boolean isLegal(Move move) {
+    return isLegal(move.fr, move.fc, move.tr, move.tc);
+  }
+}
@@ -1,9 +1,11 @@
+import java.io.IOException;
 import java.util.Scanner;
 
 public class Main {
-    public static void main(String[] args) {
-        try (Scanner scanner = new Scanner(System.in)) {
-            ChessGame game = new ChessGame(scanner);
+    public static void main(String[] args) throws IOException {
+        try (Scanner scanner = new Scanner(System.in);
+                GameLog log = GameLog.fromSystemProperty()) {
+            ChessGame game = new ChessGame(scanner, log);
             game.play();
         }
     }
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Proves or refutes "mate in N" with proof-number search. The tree is stored in flat arrays,
+ * sixteen bytes per node, and boards are rebuilt by replaying moves from the root, so a solver
+ * needs no per-node objects and can be reused across puzzles. Each iteration expands the most
+ * proving node; the defender's mobility seeds the proof numbers, so forcing lines with few
+ * replies are examined first.
+ *
+ * <p>The puzzle runner reads EPD records with a {@code dm} (direct mate) operation and an optional
+ * {@code bm}. When {@code bm} is present only those key moves are tried, which validates the
+ * published solution; otherwise any mate in the given number of moves counts.
+ *
+ * <pre>
+ *   MateSolver puzzles.epd [threads] [maxNodes]
+ * </pre>
+ */
+public final class MateSolver {
+  private static final int INFINITY = Integer.MAX_VALUE;
+  private static final int DEFAULT_MAX_NODES = 4_000_000;
+
+  public enum Status {
+    PROVEN,
+    DISPROVEN,
+    UNKNOWN
+  }
+
+  public static final class Result {
+    public final Status status;
+    public final List<Move> line;
+    public final int nodes;
+
+    Result(Status status, List<Move> line, int nodes) {
+      this.status = status;
+      this.line = line;
+      this.nodes = nodes;
+    }
+  }
+
+  private final int maxNodes;
+  private int[] proof = new int[1 << 16];
+  private int[] disproof = new int[1 << 16];
+  private int[] firstChild = new int[1 << 16];
+  private short[] childCount = new short[1 << 16];
+  private short[] move = new short[1 << 16];
+  private int size;
+
+  public MateSolver(int maxNodes) {
+    this.maxNodes = maxNodes;
+  }
+
+  public MateSolver() {
+    this(DEFAULT_MAX_NODES);
+  }
+
+  /** Searches for a mate in at most {@code moves} moves by the side to move. */
+  public Result solve(Board board, int moves) {
+    return solve(board, moves, null);
+  }
+
+  /**
+   * Like {@link #solve(Board, int)}, but the side to move may only start with one of {@code
+   * keyMoves}; null allows every legal move.
+   */
+  public Result solve(Board board, int moves, List<Move> keyMoves) {
+    if (moves < 1) throw new IllegalArgumentException("moves must be at least 1");
+    PlayerColor attacker = board.sideToMove();
+    size = 1;
+    proof[0] = 1;
+    disproof[0] = 1;
+    childCount[0] = -1;
+    int[] path = new int[2 * moves + 1];
+    while (proof[0] != 0 && disproof[0] != 0) {
+      // descend to the most proving node
+      Board position = board.copy();
+      int node = 0;
+      int ply = 0;
+      path[0] = 0;
+      while (childCount[node] >= 0) {
+        node = mostProvingChild(node, ply % 2 == 0);
+        position.applyMove(Move.decode(move[node]));
+        path[++ply] = node;
+      }
+      if (!expand(node, ply, position, moves, attacker, ply == 0 ? keyMoves : null)) {
+        return new Result(Status.UNKNOWN, List.of(), size);
+      }
+      for (int i = ply; i >= 0; i--) {
+        if (!update(path[i], i % 2 == 0) && i < ply) break;
+      }
+    }
+    if (disproof[0] == 0) return new Result(Status.DISPROVEN, List.of(), size);
+    return new Result(Status.PROVEN, provenLine(), size);
+  }
+
+  private int mostProvingChild(int node, boolean attackerToMove) {
+    int best = firstChild[node];
+    for (int child = best + 1; child < firstChild[node] + childCount[node]; child++) {
+      if (attackerToMove ? proof[child] < proof[best] : disproof[child] < disproof[best]) {
+        best = child;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Creates the children of a leaf, settling those decided at once: a reply that leaves the
+   * defender mated is proven, and any other reply after the attacker's last move is refuted.
+   * Returns false when the node table is full.
+   */
+  private boolean expand(
+      int node, int ply, Board position, int moves, PlayerColor attacker, List<Move> keyMoves) {
+    boolean attackerToMove = ply % 2 == 0;
+    PlayerColor turn = attackerToMove ? attacker : attacker.opponent();
+    List<Move> legal = position.generateLegalMoves(turn);
+    if (keyMoves != null) legal.removeIf(m -> keyMoves.stream().noneMatch(m::sameAs));
+    if (legal.isEmpty()) {
+      // only a mated defender proves the node; stalemate or a stuck attacker refutes it
+      boolean mated = !attackerToMove && position.isKingInCheck(turn);
+      childCount[node] = 0;
+      proof[node] = mated ? 0 : INFINITY;
+      disproof[node] = mated ? INFINITY : 0;
+      return true;
+    }
+    if (size + legal.size() > maxNodes) return false;
+    ensureCapacity(size + legal.size());
+    int first = size;
+    size += legal.size();
+    firstChild[node] = first;
+    childCount[node] = (short) legal.size();
+    int movesLeft = moves - ply / 2 - 1;
+    for (int i = 0; i < legal.size(); i++) {
+      Move m = legal.get(i);
+      int child = first + i;
+      move[child] = (short) m.encode();
+      childCount[child] = -1;
+      proof[child] = 1;
+      disproof[child] = 1;
+      if (!attackerToMove) continue;
+      Board next = position.copy();
+      next.applyMove(m);
+      PlayerColor defender = attacker.opponent();
+      boolean check = next.isKingInCheck(defender);
+      if (movesLeft == 0 && !check) {
+        proof[child] = INFINITY;
+        disproof[child] = 0;
+        continue;
+      }
+      int replies = next.generateLegalMoves(defender).size();
+      if (replies == 0) {
+        childCount[child] = 0;
+        proof[child] = check ? 0 : INFINITY;
+        disproof[child] = check ? INFINITY : 0;
+      } else if (movesLeft == 0) {
+        proof[child] = INFINITY;
+        disproof[child] = 0;
+      } else {
+        proof[child] = replies;
+      }
+    }
+    update(node, attackerToMove);
+    return true;
+  }
+
+  /** Recomputes a node's numbers from its children; returns whether they changed. */
+  private boolean update(int node, boolean attackerToMove) {
+    if (childCount[node] <= 0) return true;
+    int oldProof = proof[node];
+    int oldDisproof = disproof[node];
+    int min = INFINITY;
+    long sum = 0;
+    for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+      min = Math.min(min, attackerToMove ? proof[child] : disproof[child]);
+      sum += attackerToMove ? disproof[child] : proof[child];
+    }
+    int total = (int) Math.min(sum, INFINITY);
+    proof[node] = attackerToMove ? min : total;
+    disproof[node] = attackerToMove ? total : min;
+    return proof[node] != oldProof || disproof[node] != oldDisproof;
+  }
+
+  private List<Move> provenLine() {
+    List<Move> line = new ArrayList<>();
+    int node = 0;
+    while (childCount[node] > 0) {
+      int next = -1;
+      for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+        if (proof[child] == 0) {
+          next = child;
+          break;
+        }
+      }
+      line.add(Move.decode(move[next]));
+      node = next;
+    }
+    return line;
+  }
+
+  private void ensureCapacity(int needed) {
+    if (needed <= proof.length) return;
+    int capacity = Math.min(Math.max(needed, proof.length * 2), maxNodes);
+    proof = Arrays.copyOf(proof, capacity);
+    disproof = Arrays.copyOf(disproof, capacity);
+    firstChild = Arrays.copyOf(firstChild, capacity);
+    childCount = Arrays.copyOf(childCount, capacity);
+    move = Arrays.copyOf(move, capacity);
+  }
+
+  record Puzzle(String id, Board board, int moves, List<Move> keyMoves) {}
+
+  static Puzzle parse(String line, String fallbackId) {
+    int end = EpdSuite.positionEnd(line);
+    Board board = Board.fromFen(line.substring(0, end));
+    String id = fallbackId;
+    int moves = 0;
+    List<Move> keyMoves = null;
+    for (String op : EpdSuite.splitOperations(line.substring(end))) {
+      String[] parts = op.trim().split("\\s+", 2);
+      if (parts.length < 2) continue;
+      switch (parts[0]) {
+        case "dm" -> moves = Integer.parseInt(parts[1].trim());
+        case "id" -> id = parts[1].trim().replace("\"", "");
+        case "bm" -> {
+          keyMoves = new ArrayList<>();
+          for (String san : parts[1].trim().split("\\s+")) {
+            Move move = San.parse(board, board.sideToMove(), san);
+            if (move == null) throw new IllegalArgumentException("Illegal move in puzzle: " + san);
+            keyMoves.add(move);
+          }
+        }
+        default -> {}
+      }
+    }
+    if (moves < 1) throw new IllegalArgumentException("No dm operation");
+    return new Puzzle(id, board, moves, keyMoves);
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.out.println("Usage: MateSolver <puzzles.epd> [threads] [maxNodes]");
+      return;
+    }
+    int threads =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    int maxNodes = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_NODES;
+    List<Puzzle> puzzles = new ArrayList<>();
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(Path.of(args[0]))) {
+      lineNumber++;
+      if (line.isBlank() || line.startsWith("#")) continue;
+      try {
+        puzzles.add(parse(line, "#" + lineNumber));
+      } catch (IllegalArgumentException ex) {
+        System.out.println("Skipping line " + lineNumber + ": " + ex.getMessage());
+      }
+    }
+
+    ThreadLocal<MateSolver> solvers = ThreadLocal.withInitial(() -> new MateSolver(maxNodes));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    List<Future<Result>> futures = new ArrayList<>();
+    for (Puzzle puzzle : puzzles) {
+      futures.add(
+          pool.submit(
+              () -> solvers.get().solve(puzzle.board(), puzzle.moves(), puzzle.keyMoves())));
+    }
+    int[] counts = new int[Status.values().length];
+    long nodes = 0;
+    for (int i = 0; i < puzzles.size(); i++) {
+      Puzzle puzzle = puzzles.get(i);
+      Result result;
+      try {
+        result = futures.get(i).get();
+      } catch (ExecutionException ex) {
+        System.out.println("Search failed: " + ex.getCause());
+        continue;
+      }
+      counts[result.status.ordinal()]++;
+      nodes += result.nodes;
+      StringBuilder line = new StringBuilder();
+      Board position = puzzle.board().copy();
+      for (Move move : result.line) {
+        if (!line.isEmpty()) line.append(' ');
+        San.appendTo(line, position, move);
+        position.applyMove(move);
+      }
+      System.out.printf(
+          "%-9s %-20s mate in %d %,10d nodes  %s%n",
+          result.status, puzzle.id(), puzzle.moves(), result.nodes, line);
+    }
+    pool.shutdown();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf(
+        "%nProved %d, refuted %d, undecided %d of %d puzzles on %d threads in %.2fs"
+            + " (%,d nodes)%n",
+        counts[Status.PROVEN.ordinal()],
+        counts[Status.DISPROVEN.ordinal()],
+        counts[Status.UNKNOWN.ordinal()],
+        puzzles.size(),
+        threads,
+        seconds,
+        nodes);
+  }
+}
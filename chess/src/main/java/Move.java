@@ -10,4 +10,19 @@ public class Move {
         this.tr = tr;
         this.tc = tc;
     }
+
+    /** Packs the move into 12 bits: origin square in bits 6..11, target square in bits 0..5. */
+    public int encode() {
+        return (fr * 8 + fc) << 6 | (tr * 8 + tc);
+    }
+
+    public static Move decode(int code) {
+        int from = (code >>> 6) & 63;
+        int to = code & 63;
+        return new Move(from / 8, from % 8, to / 8, to % 8);
+    }
+
+    public boolean sameAs(Move other) {
+        return other != null && fr == other.fr && fc == other.fc && tr == other.tr && tc == other.tc;
+    }
 }
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+/** Moves of one game, two bytes each: every entry is the move's {@link Move#encode} code. */
+public final class MoveHistory {
+  private short[] codes = new short[16];
+  private int size;
+
+  public void add(Move move) {
+    addCode(move.encode());
+  }
+
+  void addCode(int code) {
+    if (size == codes.length) codes = Arrays.copyOf(codes, size * 2);
+    codes[size++] = (short) code;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int code(int index) {
+    if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+    return codes[index];
+  }
+
+  public Move get(int index) {
+    return Move.decode(code(index));
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /** Drops the moves after the first {@code newSize}. */
+  public void truncate(int newSize) {
+    if (newSize < 0 || newSize > size) throw new IndexOutOfBoundsException(newSize);
+    size = newSize;
+  }
+
+  /** Appends the moves in coordinate notation ({@code e2e4}), separated by spaces. */
+  public void appendCoordinates(StringBuilder sb) {
+    for (int i = 0; i < size; i++) {
+      if (i > 0) sb.append(' ');
+      int code = codes[i];
+      appendSquare(sb, code >>> 6);
+      appendSquare(sb, code & 63);
+    }
+  }
+
+  static void appendSquare(StringBuilder sb, int sq) {
+    sb.append((char) ('a' + sq % 8)).append((char) ('8' - sq / 8));
+  }
+}
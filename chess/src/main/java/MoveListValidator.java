@@ -0,0 +1,260 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks files of games in coordinate notation, one game per line ({@code e2e4 e7e5 g1f3 ...}),
+ * and reports the first illegal or unreadable move of each game. The file is cut into ranges at
+ * line breaks, one per thread; each range is mapped window by window and its moves are read
+ * straight from the mapped bytes. Each token is checked against the moving piece's geometry and
+ * then made on the board, which is left in place when it does not expose the king, so a game
+ * costs little more than replaying it and no move lists are built. A trailing {@code q} is
+ * accepted on a pawn move to the last rank only; blank lines and lines starting with {@code #}
+ * are skipped.
+ *
+ * <pre>
+ *   MoveListValidator games.txt [threads]
+ * </pre>
+ */
+public final class MoveListValidator {
+  private static final int WINDOW_BYTES = 64 << 20;
+
+  /** The first bad move of a game; {@code line} counts from 1 within the whole file. */
+  static final class Failure {
+    long line;
+    final int ply;
+    final String token;
+    final String reason;
+
+    Failure(long line, int ply, String token, String reason) {
+      this.line = line;
+      this.ply = ply;
+      this.token = token;
+      this.reason = reason;
+    }
+  }
+
+  /** Validates one range of the file; not shared between threads. */
+  static final class Worker {
+    private final Board board = new Board();
+    final List<Failure> failures = new ArrayList<>();
+    long lines;
+    long games;
+    long moves;
+
+    void validate(Path path, long start, long end) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long position = start;
+        while (position < end) {
+          long length = Math.min(WINDOW_BYTES, end - position);
+          MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+          int consumed = validateWindow(buf, (int) length, position + length == end);
+          if (consumed == 0) {
+            throw new IOException("Line longer than " + WINDOW_BYTES + " bytes at " + position);
+          }
+          position += consumed;
+        }
+      }
+    }
+
+    /** Validates the complete lines in the window and returns the bytes consumed. */
+    private int validateWindow(ByteBuffer buf, int limit, boolean last) {
+      int p = 0;
+      while (p < limit) {
+        int lineEnd = p;
+        while (lineEnd < limit && buf.get(lineEnd) != '\n') lineEnd++;
+        if (lineEnd == limit && !last) return p;
+        lines++;
+        validateLine(buf, p, lineEnd);
+        p = lineEnd + 1;
+      }
+      return limit;
+    }
+
+    private void validateLine(ByteBuffer buf, int p, int end) {
+      p = skipSpaces(buf, p, end);
+      if (p == end || buf.get(p) == '#') return;
+      games++;
+      board.init();
+      int ply = 0;
+      while (p < end) {
+        int token = p;
+        while (p < end && !isSpace(buf.get(p))) p++;
+        int length = p - token;
+        int from = length >= 4 ? square(buf, token) : -1;
+        int to = length >= 4 ? square(buf, token + 2) : -1;
+        boolean suffix = length == 5 && (buf.get(token + 4) | 0x20) == 'q';
+        if (from < 0 || to < 0 || (length != 4 && !suffix)) {
+          fail(buf, token, p, ply, "unreadable");
+          return;
+        }
+        if (suffix && !isPromotion(from, to)) {
+          fail(buf, token, p, ply, "bad promotion");
+          return;
+        }
+        if (!play(from, to)) {
+          fail(buf, token, p, ply, "illegal");
+          return;
+        }
+        ply++;
+        moves++;
+        p = skipSpaces(buf, p, end);
+      }
+    }
+
+    /**
+     * Makes the move from {@code from} to {@code to} if it is legal and returns whether it was.
+     * The move is checked with {@link Board#isPseudoLegal}, made, and taken back if it leaves the
+     * king in check; only castling, which is rare, goes through the legal move index.
+     */
+    private boolean play(int from, int to) {
+      int fr = from / 8;
+      int fc = from % 8;
+      int tr = to / 8;
+      int tc = to % 8;
+      Piece piece = board.at(fr, fc);
+      PlayerColor color = board.sideToMove();
+      if (piece == null || piece.getColor() != color) return false;
+      if (piece.getType() == PieceType.KING && Math.abs(tc - fc) == 2) {
+        if (!board.legalMoveIndex(color).isLegal(fr, fc, tr, tc)) return false;
+        board.applyMove(new Move(fr, fc, tr, tc));
+        return true;
+      }
+      if (!board.isPseudoLegal(fr, fc, tr, tc)) return false;
+      Board.Undo undo = board.makeMove(new Move(fr, fc, tr, tc));
+      if (board.isKingInCheck(color)) {
+        board.unmakeMove(undo);
+        return false;
+      }
+      return true;
+    }
+
+    private boolean isPromotion(int from, int to) {
+      Piece piece = board.at(from / 8, from % 8);
+      return piece != null && piece.getType() == PieceType.PAWN && (to / 8 == 0 || to / 8 == 7);
+    }
+
+    private void fail(ByteBuffer buf, int start, int end, int ply, String reason) {
+      byte[] bytes = new byte[end - start];
+      buf.get(start, bytes);
+      failures.add(new Failure(lines, ply, new String(bytes, StandardCharsets.US_ASCII), reason));
+    }
+  }
+
+  private static int skipSpaces(ByteBuffer buf, int p, int end) {
+    while (p < end && isSpace(buf.get(p))) p++;
+    return p;
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+
+  /** The square named by two bytes such as {@code e4}, as {@code r * 8 + c}, or -1. */
+  private static int square(ByteBuffer buf, int p) {
+    int c = buf.get(p) - 'a';
+    int r = '8' - buf.get(p + 1);
+    return (c | r) < 0 || c > 7 || r > 7 ? -1 : r * 8 + c;
+  }
+
+  /** Returns {@code parts + 1} ascending offsets, each the start of a line or the file end. */
+  static long[] split(Path path, int parts) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long[] bounds = new long[parts + 1];
+      bounds[parts] = size;
+      ByteBuffer probe = ByteBuffer.allocate(64 << 10);
+      for (int i = 1; i < parts; i++) {
+        long position = Math.max(bounds[i - 1], size * i / parts);
+        long next = size;
+        while (position < size && next == size) {
+          probe.clear();
+          int n = channel.read(probe, position);
+          if (n <= 0) break;
+          for (int j = 0; j < n; j++) {
+            if (probe.get(j) == '\n') {
+              next = position + j + 1;
+              break;
+            }
+          }
+          position += n;
+        }
+        bounds[i] = Math.max(bounds[i - 1], next);
+      }
+      return bounds;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.out.println("Usage: MoveListValidator <games.txt> [threads]");
+      return;
+    }
+    Path path = Path.of(args[0]);
+    int threads =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    long start = System.nanoTime();
+    long[] bounds = split(path, threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Worker> workers = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Worker worker = new Worker();
+      long from = bounds[i];
+      long to = bounds[i + 1];
+      workers.add(worker);
+      futures.add(
+          pool.submit(
+              () -> {
+                worker.validate(path, from, to);
+                return null;
+              }));
+    }
+    try {
+      for (Future<?> future : futures) future.get();
+    } catch (ExecutionException ex) {
+      throw new IOException("Validation failed", ex.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    PrintWriter out =
+        new PrintWriter(
+            new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+    long lineOffset = 0;
+    long games = 0;
+    long moves = 0;
+    long failed = 0;
+    for (Worker worker : workers) {
+      for (Failure failure : worker.failures) {
+        failure.line += lineOffset;
+        out.printf(
+            "line %d, ply %d: %s move %s%n",
+            failure.line, failure.ply + 1, failure.reason, failure.token);
+      }
+      lineOffset += worker.lines;
+      games += worker.games;
+      moves += worker.moves;
+      failed += worker.failures.size();
+    }
+    out.printf(
+        "%n%,d games, %,d with a bad move, %,d valid moves in %.2fs on %d threads"
+            + " (%,.0f moves/s)%n",
+        games, failed, moves, seconds, threads, moves / seconds);
+    out.flush();
+  }
+}
@@ -0,0 +1,92 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares evaluations per second of the classical evaluation and the NNUE evaluator.
+ *
+ * <p>Usage: {@code NnueBench [network-file]}. Without a file an untrained random network is used,
+ * which is enough to measure speed.
+ */
+public class NnueBench {
+  private static final int GAMES = 200;
+  private static final int MAX_PLIES = 80;
+
+  public static void main(String[] args) throws Exception {
+    Path netPath;
+    if (args.length > 0) {
+      netPath = Path.of(args[0]);
+    } else {
+      netPath = Files.createTempFile("bench", ".nnue");
+      netPath.toFile().deleteOnExit();
+      NnueNetwork.writeRandom(netPath, 256, 32, 42L);
+    }
+    NnueNetwork net = NnueNetwork.load(netPath);
+    System.out.println(
+        "Network: hidden=" + net.hiddenSize() + ", SIMD=" + NnueNetwork.isVectorized());
+
+    List<Board> positions = new ArrayList<>();
+    List<Move> moves = new ArrayList<>();
+    List<Boolean> gameStarts = new ArrayList<>();
+    Random random = new Random(7);
+    for (int g = 0; g < GAMES; g++) {
+      Board board = new Board();
+      PlayerColor turn = PlayerColor.WHITE;
+      for (int ply = 0; ply < MAX_PLIES; ply++) {
+        List<Move> legal = board.generateLegalMoves(turn);
+        if (legal.isEmpty()) break;
+        Move move = legal.get(random.nextInt(legal.size()));
+        positions.add(board.copy());
+        moves.add(move);
+        gameStarts.add(ply == 0);
+        board.applyMove(move);
+        turn = turn.opponent();
+      }
+    }
+
+    for (int round = 0; round < 3; round++) {
+      System.out.println("Round " + (round + 1) + " (" + positions.size() + " positions)");
+
+      long start = System.nanoTime();
+      double sink = 0;
+      for (Board board : positions) {
+        sink += ChessAI.classicalEvaluation(board, EvalWeights.DEFAULT);
+      }
+      report("classical", positions.size(), System.nanoTime() - start, sink);
+
+      NnueNetwork.Accumulator acc = net.newAccumulator();
+      start = System.nanoTime();
+      sink = 0;
+      for (Board board : positions) {
+        acc.refresh(board);
+        sink += net.evaluate(acc, PlayerColor.WHITE);
+      }
+      report("nnue (full refresh)", positions.size(), System.nanoTime() - start, sink);
+
+      NnueNetwork.Accumulator parent = net.newAccumulator();
+      NnueNetwork.Accumulator child = net.newAccumulator();
+      start = System.nanoTime();
+      sink = 0;
+      for (int i = 0; i < positions.size(); i++) {
+        Board board = positions.get(i);
+        if (gameStarts.get(i)) {
+          parent.refresh(board);
+        }
+        child.copyFrom(parent);
+        child.update(board, moves.get(i));
+        sink += net.evaluate(child, PlayerColor.WHITE);
+        NnueNetwork.Accumulator swap = parent;
+        parent = child;
+        child = swap;
+      }
+      report("nnue (incremental)", positions.size(), System.nanoTime() - start, sink);
+    }
+  }
+
+  private static void report(String label, int count, long nanos, double sink) {
+    double perSecond = count / (nanos / 1e9);
+    System.out.printf("  %-22s %,14.0f evals/s  (checksum %.1f)%n", label, perSecond, sink);
+  }
+}
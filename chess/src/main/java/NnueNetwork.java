@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Quantised evaluation network: 768 piece-square inputs per perspective feeding an int16
+ * accumulator, a clipped int8 hidden layer and a single int8 output neuron.
+ *
+ * <p>File layout (little-endian): magic {@code "NNUE"}, version, hidden size, layer-2 size,
+ * output scale, then feature weights {@code int16[768 * hidden]}, feature bias {@code
+ * int16[hidden]}, layer-2 weights {@code int8[l2 * 2 * hidden]}, layer-2 bias {@code int32[l2]},
+ * output weights {@code int8[l2]} and output bias {@code int32}.
+ */
+public final class NnueNetwork {
+  static final int MAGIC = 0x45554E4E;
+  static final int VERSION = 1;
+  static final int FEATURES = 768;
+  static final int ACTIVATION_MAX = 127;
+  static final int L2_SHIFT = 6;
+
+  private static final Kernels KERNELS = selectKernels();
+
+  private final int hidden;
+  private final int l2Size;
+  private final int outputScale;
+  private final short[] featureWeights;
+  private final short[] featureBias;
+  private final short[] l2Weights;
+  private final int[] l2Bias;
+  private final short[] outputWeights;
+  private final int outputBias;
+
+  private NnueNetwork(ByteBuffer in) {
+    in.order(ByteOrder.LITTLE_ENDIAN);
+    if (in.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not an NNUE network file");
+    }
+    int version = in.getInt();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported NNUE version: " + version);
+    }
+    hidden = in.getInt();
+    l2Size = in.getInt();
+    outputScale = in.getInt();
+    if (hidden <= 0 || l2Size <= 0 || outputScale <= 0) {
+      throw new IllegalArgumentException("Corrupt NNUE header");
+    }
+    featureWeights = new short[FEATURES * hidden];
+    in.asShortBuffer().get(featureWeights);
+    in.position(in.position() + featureWeights.length * 2);
+    featureBias = new short[hidden];
+    in.asShortBuffer().get(featureBias);
+    in.position(in.position() + hidden * 2);
+    l2Weights = readBytesAsShorts(in, l2Size * 2 * hidden);
+    l2Bias = new int[l2Size];
+    in.asIntBuffer().get(l2Bias);
+    in.position(in.position() + l2Size * 4);
+    outputWeights = readBytesAsShorts(in, l2Size);
+    outputBias = in.getInt();
+  }
+
+  private static short[] readBytesAsShorts(ByteBuffer in, int count) {
+    short[] values = new short[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = in.get();
+    }
+    return values;
+  }
+
+  public static NnueNetwork load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new NnueNetwork(mapped);
+    }
+  }
+
+  public static NnueNetwork fromSystemProperty() {
+    String path = System.getProperty("chess.nnue");
+    if (path == null || path.isBlank()) {
+      return null;
+    }
+    try {
+      return load(Path.of(path));
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot load NNUE network " + path, ex);
+    }
+  }
+
+  /** A hash of the layer sizes and every weight, telling networks apart in files kept on disk. */
+  public long fingerprint() {
+    long h = hidden;
+    h = h * 31 + l2Size;
+    h = h * 31 + outputScale;
+    h = h * 31 + Arrays.hashCode(featureWeights);
+    h = h * 31 + Arrays.hashCode(featureBias);
+    h = h * 31 + Arrays.hashCode(l2Weights);
+    h = h * 31 + Arrays.hashCode(l2Bias);
+    h = h * 31 + Arrays.hashCode(outputWeights);
+    return h * 31 + outputBias;
+  }
+
+  /** Writes an untrained network with small random weights, for benchmarking and plumbing. */
+  public static void writeRandom(Path path, int hidden, int l2Size, long seed) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    int size = 20 + FEATURES * hidden * 2 + hidden * 2 + l2Size * 2 * hidden + l2Size * 4
+        + l2Size + 4;
+    ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(MAGIC).putInt(VERSION).putInt(hidden).putInt(l2Size).putInt(400);
+    for (int i = 0; i < FEATURES * hidden; i++) out.putShort((short) random.nextInt(-32, 33));
+    for (int i = 0; i < hidden; i++) out.putShort((short) random.nextInt(0, 64));
+    for (int i = 0; i < l2Size * 2 * hidden; i++) out.put((byte) random.nextInt(-16, 17));
+    for (int i = 0; i < l2Size; i++) out.putInt(random.nextInt(-256, 257));
+    for (int i = 0; i < l2Size; i++) out.put((byte) random.nextInt(-64, 65));
+    out.putInt(0);
+    out.flip();
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+
+  public static boolean isVectorized() {
+    return !(KERNELS instanceof ScalarKernels);
+  }
+
+  public int hiddenSize() {
+    return hidden;
+  }
+
+  public Accumulator newAccumulator() {
+    return new Accumulator(this);
+  }
+
+  /** Scores the position behind {@code acc} in pawns from {@code perspective}'s point of view. */
+  public double evaluate(Accumulator acc, PlayerColor perspective) {
+    short[] us = perspective == PlayerColor.WHITE ? acc.white : acc.black;
+    short[] them = perspective == PlayerColor.WHITE ? acc.black : acc.white;
+    short[] act = acc.activations;
+    KERNELS.clippedRelu(us, act, 0, hidden);
+    KERNELS.clippedRelu(them, act, hidden, hidden);
+    short[] l2 = acc.l2Activations;
+    int inputs = 2 * hidden;
+    for (int j = 0; j < l2Size; j++) {
+      int sum = (l2Bias[j] + KERNELS.dot(act, l2Weights, j * inputs, inputs)) >> L2_SHIFT;
+      l2[j] = (short) Math.max(0, Math.min(ACTIVATION_MAX, sum));
+    }
+    int output = outputBias + KERNELS.dot(l2, outputWeights, 0, l2Size);
+    return (double) output / outputScale;
+  }
+
+  private static int featureIndex(Piece piece, int r, int c, PlayerColor perspective) {
+    int side = piece.getColor() == perspective ? 0 : 6;
+    int row = perspective == PlayerColor.WHITE ? r : 7 - r;
+    return ((side + piece.getType().ordinal()) * 64 + row * 8 + c);
+  }
+
+  private static Kernels selectKernels() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+        && !Boolean.getBoolean("chess.nnue.scalar")) {
+      try {
+        return new NnueVectorKernels();
+      } catch (LinkageError ex) {
+        // fall back to the scalar kernels below
+      }
+    }
+    return new ScalarKernels();
+  }
+
+  /**
+   * Per-position first-layer state for both perspectives. A search keeps one per ply: making a
+   * move copies the parent and applies the feature delta, unmaking just drops back a ply.
+   */
+  public static final class Accumulator {
+    private final NnueNetwork net;
+    private final short[] white;
+    private final short[] black;
+    private final short[] activations;
+    private final short[] l2Activations;
+
+    private Accumulator(NnueNetwork net) {
+      this.net = net;
+      this.white = new short[net.hidden];
+      this.black = new short[net.hidden];
+      this.activations = new short[net.hidden * 2];
+      this.l2Activations = new short[net.l2Size];
+    }
+
+    public void refresh(Board board) {
+      System.arraycopy(net.featureBias, 0, white, 0, net.hidden);
+      System.arraycopy(net.featureBias, 0, black, 0, net.hidden);
+      for (int r = 0; r < 8; r++) {
+        for (int c = 0; c < 8; c++) {
+          Piece piece = board.at(r, c);
+          if (piece != null) {
+            add(piece, r, c);
+          }
+        }
+      }
+    }
+
+    public void copyFrom(Accumulator other) {
+      System.arraycopy(other.white, 0, white, 0, net.hidden);
+      System.arraycopy(other.black, 0, black, 0, net.hidden);
+    }
+
+    /** Applies the feature changes of {@code move}; {@code before} is the board prior to it. */
+    public void update(Board before, Move move) {
+      Piece moving = before.at(move.fr, move.fc);
+      if (moving == null) {
+        return;
+      }
+      Piece captured = before.at(move.tr, move.tc);
+      remove(moving, move.fr, move.fc);
+      if (captured != null) {
+        remove(captured, move.tr, move.tc);
+      }
+      Piece placed = moving;
+      if (moving.getType() == PieceType.PAWN && (move.tr == 0 || move.tr == 7)) {
+        placed = Piece.of(PieceType.QUEEN, moving.getColor());
+      }
+      add(placed, move.tr, move.tc);
+      if (moving.getType() == PieceType.KING && Math.abs(move.tc - move.fc) == 2) {
+        int rookFrom = move.tc > move.fc ? 7 : 0;
+        int rookTo = move.tc > move.fc ? 5 : 3;
+        Piece rook = before.at(move.fr, rookFrom);
+        if (rook != null) {
+          remove(rook, move.fr, rookFrom);
+          add(rook, move.fr, rookTo);
+        }
+      }
+    }
+
+    private void add(Piece piece, int r, int c) {
+      int h = net.hidden;
+      KERNELS.add(white, net.featureWeights, featureIndex(piece, r, c, PlayerColor.WHITE) * h, h);
+      KERNELS.add(black, net.featureWeights, featureIndex(piece, r, c, PlayerColor.BLACK) * h, h);
+    }
+
+    private void remove(Piece piece, int r, int c) {
+      int h = net.hidden;
+      KERNELS.sub(white, net.featureWeights, featureIndex(piece, r, c, PlayerColor.WHITE) * h, h);
+      KERNELS.sub(black, net.featureWeights, featureIndex(piece, r, c, PlayerColor.BLACK) * h, h);
+    }
+  }
+
+  interface Kernels {
+    void add(short[] acc, short[] weights, int offset, int length);
+
+    void sub(short[] acc, short[] weights, int offset, int length);
+
+    void clippedRelu(short[] in, short[] out, int outOffset, int length);
+
+    int dot(short[] a, short[] weights, int offset, int length);
+  }
+
+  static final class ScalarKernels implements Kernels {
+    @Override
+    public void add(short[] acc, short[] weights, int offset, int length) {
+      for (int i = 0; i < length; i++) {
+        acc[i] += weights[offset + i];
+      }
+    }
+
+    @Override
+    public void sub(short[] acc, short[] weights, int offset, int length) {
+      for (int i = 0; i < length; i++) {
+        acc[i] -= weights[offset + i];
+      }
+    }
+
+    @Override
+    public void clippedRelu(short[] in, short[] out, int outOffset, int length) {
+      for (int i = 0; i < length; i++) {
+        out[outOffset + i] = (short) Math.max(0, Math.min(ACTIVATION_MAX, in[i]));
+      }
+    }
+
+    @Override
+    public int dot(short[] a, short[] weights, int offset, int length) {
+      int sum = 0;
+      for (int i = 0; i < length; i++) {
+        sum += a[i] * weights[offset + i];
+      }
+      return sum;
+    }
+  }
+}
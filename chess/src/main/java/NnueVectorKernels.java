@@ -0,0 +1,72 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** SIMD kernels for {@link NnueNetwork}; only loaded when {@code jdk.incubator.vector} is present. */
+final class NnueVectorKernels implements NnueNetwork.Kernels {
+  private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+  @Override
+  public void add(short[] acc, short[] weights, int offset, int length) {
+    int i = 0;
+    int bound = SHORTS.loopBound(length);
+    for (; i < bound; i += SHORTS.length()) {
+      ShortVector.fromArray(SHORTS, acc, i)
+          .add(ShortVector.fromArray(SHORTS, weights, offset + i))
+          .intoArray(acc, i);
+    }
+    for (; i < length; i++) {
+      acc[i] += weights[offset + i];
+    }
+  }
+
+  @Override
+  public void sub(short[] acc, short[] weights, int offset, int length) {
+    int i = 0;
+    int bound = SHORTS.loopBound(length);
+    for (; i < bound; i += SHORTS.length()) {
+      ShortVector.fromArray(SHORTS, acc, i)
+          .sub(ShortVector.fromArray(SHORTS, weights, offset + i))
+          .intoArray(acc, i);
+    }
+    for (; i < length; i++) {
+      acc[i] -= weights[offset + i];
+    }
+  }
+
+  @Override
+  public void clippedRelu(short[] in, short[] out, int outOffset, int length) {
+    int i = 0;
+    int bound = SHORTS.loopBound(length);
+    for (; i < bound; i += SHORTS.length()) {
+      ShortVector.fromArray(SHORTS, in, i)
+          .max((short) 0)
+          .min((short) NnueNetwork.ACTIVATION_MAX)
+          .intoArray(out, outOffset + i);
+    }
+    for (; i < length; i++) {
+      out[outOffset + i] = (short) Math.max(0, Math.min(NnueNetwork.ACTIVATION_MAX, in[i]));
+    }
+  }
+
+  @Override
+  public int dot(short[] a, short[] weights, int offset, int length) {
+    IntVector sum = IntVector.zero(INTS);
+    int i = 0;
+    int bound = SHORTS.loopBound(length);
+    for (; i < bound; i += SHORTS.length()) {
+      ShortVector product =
+          ShortVector.fromArray(SHORTS, a, i).mul(ShortVector.fromArray(SHORTS, weights, offset + i));
+      sum =
+          sum.add(product.convertShape(VectorOperators.S2I, INTS, 0))
+              .add(product.convertShape(VectorOperators.S2I, INTS, 1));
+    }
+    int result = sum.reduceLanes(VectorOperators.ADD);
+    for (; i < length; i++) {
+      result += a[i] * weights[offset + i];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,401 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opening explorer over a game corpus: for a position, the moves played from it and how those
+ * games ended for the side that moved.
+ *
+ * <p>The index is built by an external sort. Reader threads turn games into packed {@code
+ * (position, move, result)} longs, sort and aggregate them in fixed-size runs on disk, and the
+ * runs are then merged into sorted segments of 20-byte records {@code (key, wins, draws,
+ * losses)}. Segments are memory-mapped when the index is opened; only every {@value
+ * #FENCE_INTERVAL}th key is kept on the heap, so a lookup is a binary search over the fences plus
+ * a short scan of one block.
+ *
+ * <pre>
+ *   OpeningIndex build &lt;games.pgn&gt; &lt;index-dir&gt; [threads] [max-plies]
+ *   OpeningIndex query &lt;index-dir&gt; [fen]
+ * </pre>
+ */
+public final class OpeningIndex {
+  static final int MAGIC = 0x3158504F;
+  static final int VERSION = 1;
+  static final int RECORD_BYTES = 20;
+  static final int SEGMENT_RECORDS = 1 << 20;
+  static final int FENCE_INTERVAL = 64;
+  static final int RUN_RECORDS = 1 << 21;
+  static final String MANIFEST = "index.bin";
+
+  /** Low hash bits dropped so that a key, a 12-bit move and a 2-bit result fit one long. */
+  private static final int HASH_SHIFT = 15;
+
+  /** Aggregated results of one move; wins and losses are from the moving side's view. */
+  public static final class Entry {
+    public final Move move;
+    public final int wins;
+    public final int draws;
+    public final int losses;
+
+    Entry(Move move, int wins, int draws, int losses) {
+      this.move = move;
+      this.wins = wins;
+      this.draws = draws;
+      this.losses = losses;
+    }
+
+    public int games() {
+      return wins + draws + losses;
+    }
+  }
+
+  private final long recordCount;
+  private final int segmentRecords;
+  private final int fenceInterval;
+  private final long[] fences;
+  private final MappedByteBuffer[] segments;
+
+  private OpeningIndex(
+      long recordCount,
+      int segmentRecords,
+      int fenceInterval,
+      long[] fences,
+      MappedByteBuffer[] segments) {
+    this.recordCount = recordCount;
+    this.segmentRecords = segmentRecords;
+    this.fenceInterval = fenceInterval;
+    this.fences = fences;
+    this.segments = segments;
+  }
+
+  public static OpeningIndex open(Path dir) throws IOException {
+    ByteBuffer manifest = ByteBuffer.wrap(Files.readAllBytes(dir.resolve(MANIFEST)));
+    manifest.order(ByteOrder.LITTLE_ENDIAN);
+    if (manifest.remaining() < 32 || manifest.getInt() != MAGIC) {
+      throw new IOException("Not an opening index: " + dir);
+    }
+    if (manifest.getInt() != VERSION) {
+      throw new IOException("Unsupported opening index version in " + dir);
+    }
+    long records = manifest.getLong();
+    int segmentRecords = manifest.getInt();
+    int fenceInterval = manifest.getInt();
+    int segmentCount = manifest.getInt();
+    int fenceCount = manifest.getInt();
+    if (manifest.remaining() != fenceCount * 8L) {
+      throw new IOException("Truncated opening index manifest in " + dir);
+    }
+    long[] fences = new long[fenceCount];
+    manifest.asLongBuffer().get(fences);
+    MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      try (FileChannel channel = FileChannel.open(segmentPath(dir, i), StandardOpenOption.READ)) {
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        segments[i].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+    return new OpeningIndex(records, segmentRecords, fenceInterval, fences, segments);
+  }
+
+  /** Opens the index named by {@code -Dchess.explorer}, or {@code opening-index}, if present. */
+  public static OpeningIndex fromSystemProperty() {
+    Path dir = Path.of(System.getProperty("chess.explorer", "opening-index"));
+    if (!Files.isRegularFile(dir.resolve(MANIFEST))) {
+      return null;
+    }
+    try {
+      return open(dir);
+    } catch (IOException ex) {
+      System.err.println("Ignoring opening index " + dir + ": " + ex.getMessage());
+      return null;
+    }
+  }
+
+  public long recordCount() {
+    return recordCount;
+  }
+
+  /** Returns the moves recorded for the position with this hash, most played first. */
+  public List<Entry> lookup(long hash) {
+    long lo = positionKey(hash) << 12;
+    long hi = lo | 0xFFF;
+    int fence = Arrays.binarySearch(fences, lo);
+    if (fence < 0) fence = Math.max(0, -fence - 2);
+    List<Entry> entries = new ArrayList<>();
+    for (long i = (long) fence * fenceInterval; i < recordCount; i++) {
+      ByteBuffer segment = segments[(int) (i / segmentRecords)];
+      int offset = (int) (i % segmentRecords) * RECORD_BYTES;
+      long key = segment.getLong(offset);
+      if (key > hi) break;
+      if (key >= lo) {
+        entries.add(
+            new Entry(
+                Move.decode((int) (key & 0xFFF)),
+                segment.getInt(offset + 8),
+                segment.getInt(offset + 12),
+                segment.getInt(offset + 16)));
+      }
+    }
+    entries.sort(Comparator.comparingInt(Entry::games).reversed());
+    return entries;
+  }
+
+  private static long positionKey(long hash) {
+    return hash >>> HASH_SHIFT;
+  }
+
+  private static Path segmentPath(Path dir, int index) {
+    return dir.resolve(String.format("segment-%04d.bin", index));
+  }
+
+  /** Indexes the first {@code maxPlies} moves of every game with a known result. */
+  public static void build(Path pgn, Path dir, int threads, int maxPlies)
+      throws IOException, InterruptedException {
+    Files.createDirectories(dir);
+    Path runDir = Files.createTempDirectory(dir, "runs");
+    List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+    List<Collector> collectors = new ArrayList<>();
+    AtomicInteger runIds = new AtomicInteger();
+    try {
+      PgnReader.readParallel(
+          pgn,
+          threads,
+          () -> {
+            Collector collector = new Collector(runDir, runIds, runs, maxPlies);
+            collectors.add(collector);
+            return collector;
+          });
+      for (Collector collector : collectors) collector.spill();
+      merge(runs, dir);
+    } finally {
+      for (Path run : runs) Files.deleteIfExists(run);
+      Files.deleteIfExists(runDir);
+    }
+  }
+
+  /** Buffers one reader thread's records and spills them as sorted, aggregated runs. */
+  private static final class Collector implements PgnReader.Listener {
+    private final Path runDir;
+    private final AtomicInteger runIds;
+    private final List<Path> runs;
+    private final long[] game;
+    private final long[] buffer = new long[RUN_RECORDS];
+    private final int[] counts = new int[3];
+    private int plies;
+    private int fill;
+
+    Collector(Path runDir, AtomicInteger runIds, List<Path> runs, int maxPlies) {
+      this.runDir = runDir;
+      this.runIds = runIds;
+      this.runs = runs;
+      this.game = new long[maxPlies];
+    }
+
+    @Override
+    public void startGame() {
+      plies = 0;
+    }
+
+    @Override
+    public void move(Board before, Move move) {
+      if (plies == game.length) return;
+      long record = positionKey(before.hash()) << 14 | (long) move.encode() << 2;
+      if (before.at(move.fr, move.fc).getColor() == PlayerColor.BLACK) record |= 1;
+      game[plies++] = record;
+    }
+
+    @Override
+    public void endGame(int result, Board board, boolean complete) {
+      if (result == PgnReader.UNKNOWN) return;
+      for (int i = 0; i < plies; i++) {
+        long record = game[i];
+        int forMover = (record & 1) != 0 ? 2 - result : result;
+        buffer[fill++] = (record & ~3L) | forMover;
+        if (fill == buffer.length) {
+          try {
+            spill();
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        }
+      }
+    }
+
+    void spill() throws IOException {
+      if (fill == 0) return;
+      Arrays.sort(buffer, 0, fill);
+      Path run = runDir.resolve("run-" + runIds.getAndIncrement() + ".bin");
+      runs.add(run);
+      try (RecordWriter out = new RecordWriter(run)) {
+        int i = 0;
+        while (i < fill) {
+          long key = buffer[i] >>> 2;
+          int[] counts = this.counts;
+          counts[0] = counts[1] = counts[2] = 0;
+          while (i < fill && buffer[i] >>> 2 == key) {
+            counts[(int) (buffer[i] & 3)]++;
+            i++;
+          }
+          out.write(key, counts[2], counts[1], counts[0]);
+        }
+      }
+      fill = 0;
+    }
+  }
+
+  private static void merge(List<Path> runs, Path dir) throws IOException {
+    PriorityQueue<RunCursor> queue =
+        new PriorityQueue<>(Math.max(1, runs.size()), Comparator.comparingLong(c -> c.key));
+    for (Path run : runs) {
+      RunCursor cursor = new RunCursor(run);
+      if (cursor.advance()) queue.add(cursor);
+    }
+    long records = 0;
+    int segmentCount = 0;
+    long[] fences = new long[16];
+    RecordWriter out = null;
+    try {
+      while (!queue.isEmpty()) {
+        RunCursor head = queue.poll();
+        long key = head.key;
+        int wins = head.wins;
+        int draws = head.draws;
+        int losses = head.losses;
+        if (head.advance()) queue.add(head);
+        while (!queue.isEmpty() && queue.peek().key == key) {
+          RunCursor same = queue.poll();
+          wins += same.wins;
+          draws += same.draws;
+          losses += same.losses;
+          if (same.advance()) queue.add(same);
+        }
+        if (records % SEGMENT_RECORDS == 0) {
+          if (out != null) out.close();
+          out = new RecordWriter(segmentPath(dir, segmentCount++));
+        }
+        if (records % FENCE_INTERVAL == 0) {
+          int fence = (int) (records / FENCE_INTERVAL);
+          if (fence == fences.length) fences = Arrays.copyOf(fences, fence * 2);
+          fences[fence] = key;
+        }
+        out.write(key, wins, draws, losses);
+        records++;
+      }
+    } finally {
+      if (out != null) out.close();
+    }
+    for (int i = segmentCount; Files.deleteIfExists(segmentPath(dir, i)); i++) {
+      // drop segments left over from a larger previous build
+    }
+
+    int fenceCount = (int) ((records + FENCE_INTERVAL - 1) / FENCE_INTERVAL);
+    ByteBuffer manifest =
+        ByteBuffer.allocate(32 + fenceCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+    manifest.putInt(MAGIC).putInt(VERSION).putLong(records);
+    manifest.putInt(SEGMENT_RECORDS).putInt(FENCE_INTERVAL).putInt(segmentCount).putInt(fenceCount);
+    for (int i = 0; i < fenceCount; i++) manifest.putLong(fences[i]);
+    Files.write(dir.resolve(MANIFEST), manifest.array());
+  }
+
+  /** Appends records to a file through a reusable direct buffer. */
+  private static final class RecordWriter implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buf =
+        ByteBuffer.allocateDirect(RECORD_BYTES * 8192).order(ByteOrder.LITTLE_ENDIAN);
+
+    RecordWriter(Path path) throws IOException {
+      channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void write(long key, int wins, int draws, int losses) throws IOException {
+      if (buf.remaining() < RECORD_BYTES) flush();
+      buf.putLong(key).putInt(wins).putInt(draws).putInt(losses);
+    }
+
+    private void flush() throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) channel.write(buf);
+      buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+      channel.close();
+    }
+  }
+
+  /** Reads a sorted run back through a memory mapping. */
+  private static final class RunCursor {
+    private final MappedByteBuffer buf;
+    long key;
+    int wins;
+    int draws;
+    int losses;
+
+    RunCursor(Path run) throws IOException {
+      try (FileChannel channel = FileChannel.open(run, StandardOpenOption.READ)) {
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+      }
+    }
+
+    boolean advance() {
+      if (buf.remaining() < RECORD_BYTES) return false;
+      key = buf.getLong();
+      wins = buf.getInt();
+      draws = buf.getInt();
+      losses = buf.getInt();
+      return true;
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length >= 3 && args[0].equals("build")) {
+      int threads =
+          args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+      int maxPlies = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+      long start = System.nanoTime();
+      build(Path.of(args[1]), Path.of(args[2]), threads, maxPlies);
+      System.out.printf(
+          "Indexed %,d position/move pairs in %.2fs%n",
+          open(Path.of(args[2])).recordCount(),
+          (System.nanoTime() - start) / 1e9);
+    } else if (args.length >= 2 && args[0].equals("query")) {
+      OpeningIndex index = open(Path.of(args[1]));
+      Board board = args.length > 2 ? Board.fromFen(args[2]) : new Board();
+      List<Entry> entries = index.lookup(board.hash());
+      for (Entry entry : entries) {
+        System.out.printf(
+            "%-7s %,9d games  +%d =%d -%d%n",
+            San.format(board, entry.move), entry.games(), entry.wins, entry.draws, entry.losses);
+      }
+      int rounds = 100_000;
+      long start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) index.lookup(board.hash());
+      System.out.printf("Lookup: %.2f us%n", (System.nanoTime() - start) / 1e3 / rounds);
+    } else {
+      System.out.println(
+          "Usage: OpeningIndex build <games.pgn> <index-dir> [threads] [max-plies]\n"
+              + "       OpeningIndex query <index-dir> [fen]");
+    }
+  }
+}
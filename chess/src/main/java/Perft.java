@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * Counts the leaves of the legal move tree to a fixed depth, for validating move generation. The
+ * board has no en passant or under-promotions, so counts match the published tables only until
+ * those moves become possible (depth 4 from the start position).
+ *
+ * <pre>
+ *   Perft depth [fen]
+ * </pre>
+ */
+public final class Perft {
+  private Perft() {}
+
+  public static long perft(Board board, int depth) {
+    if (depth == 0) return 1;
+    List<Move> moves = board.legalMoveIndex(board.sideToMove()).moves();
+    if (depth == 1) return moves.size();
+    long total = 0;
+    for (Move move : moves) {
+      Board child = board.copy();
+      child.applyMove(move);
+      total += perft(child, depth - 1);
+    }
+    return total;
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 1) {
+      System.out.println("Usage: Perft <depth> [fen]");
+      return;
+    }
+    int depth = Integer.parseInt(args[0]);
+    if (depth < 1) throw new IllegalArgumentException("depth must be at least 1");
+    Board board = args.length > 1 ? Board.fromFen(args[1]) : new Board();
+    long start = System.nanoTime();
+    long total = 0;
+    for (Move move : board.legalMoveIndex(board.sideToMove()).moves()) {
+      Board child = board.copy();
+      child.applyMove(move);
+      long count = perft(child, depth - 1);
+      System.out.printf("%-7s %,d%n", San.format(board, move), count);
+      total += count;
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf(
+        "%nperft(%d) = %,d in %.2fs (%,.0f nodes/s)%n", depth, total, seconds, total / seconds);
+  }
+}
@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Streaming PGN reader. The file is mapped window by window, tokens are read straight out of the
+ * mapped bytes and SAN is resolved against {@link Board} legal moves through a reused {@link
+ * CharSequence} view, so memory stays bounded by the window size whatever the file size.
+ *
+ * <p>{@link #split} cuts a file at game boundaries so ranges can be read by separate threads.
+ */
+public final class PgnReader {
+  public static final int BLACK_WINS = 0;
+  public static final int DRAW = 1;
+  public static final int WHITE_WINS = 2;
+  public static final int UNKNOWN = -1;
+
+  private static final int WINDOW_BYTES = 32 << 20;
+
+  /** Receives games as they are read. The board passed in is reused and only valid in the call. */
+  public interface Listener {
+    default void startGame() {}
+
+    default void tag(CharSequence name, CharSequence value) {}
+
+    default void move(Board before, Move move) {}
+
+    /** {@code complete} is false when a move could not be resolved and the rest was skipped. */
+    default void endGame(int result, Board board, boolean complete) {}
+  }
+
+  private final Listener listener;
+  private final Board board = new Board();
+  private final ByteSlice token = new ByteSlice();
+  private final ByteSlice tagValue = new ByteSlice();
+
+  private PgnReader(Listener listener) {
+    this.listener = listener;
+  }
+
+  public static void read(Path path, Listener listener) throws IOException {
+    read(path, 0, Long.MAX_VALUE, listener);
+  }
+
+  /** Reads the games starting in {@code [start, end)}; {@code start} must be a game boundary. */
+  public static void read(Path path, long start, long end, Listener listener) throws IOException {
+    PgnReader reader = new PgnReader(listener);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      end = Math.min(end, size);
+      long position = start;
+      int window = WINDOW_BYTES;
+      while (position < end) {
+        long length = Math.min(window, size - position);
+        boolean eof = position + length == size;
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int consumed = reader.readWindow(buf, (int) Math.min(length, end - position), eof);
+        if (consumed == 0) {
+          if (eof) break;
+          window = (int) Math.min(Integer.MAX_VALUE, (long) window * 2);
+          continue;
+        }
+        position += consumed;
+      }
+    }
+  }
+
+  public static void readParallel(Path path, int threads, Supplier<Listener> listeners)
+      throws IOException, InterruptedException {
+    long[] bounds = split(path, threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i + 1 < bounds.length; i++) {
+        long from = bounds[i];
+        long to = bounds[i + 1];
+        Listener listener = listeners.get();
+        futures.add(
+            pool.submit(
+                () -> {
+                  read(path, from, to, listener);
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          throw new IOException("PGN worker failed", ex.getCause());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Returns {@code parts + 1} ascending offsets, each the start of a game or the file end. */
+  public static long[] split(Path path, int parts) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long[] bounds = new long[parts + 1];
+      bounds[parts] = size;
+      ByteBuffer probe = ByteBuffer.allocate(64 << 10);
+      for (int i = 1; i < parts; i++) {
+        long from = Math.max(bounds[i - 1], size * i / parts);
+        bounds[i] = nextGameStart(channel, from, size, probe);
+      }
+      return bounds;
+    }
+  }
+
+  private static long nextGameStart(FileChannel channel, long from, long size, ByteBuffer probe)
+      throws IOException {
+    if (from == 0) return 0;
+    long position = from - 1;
+    boolean previousLineIsTag = true;
+    boolean atLineStart = false;
+    boolean lineStartSeen = false;
+    while (position < size) {
+      probe.clear();
+      int n = channel.read(probe, position);
+      if (n <= 0) break;
+      for (int i = 0; i < n; i++) {
+        byte b = probe.get(i);
+        if (atLineStart) {
+          atLineStart = false;
+          if (b == '[' && lineStartSeen && !previousLineIsTag) {
+            return position + i;
+          }
+          if (b != '\n' && b != '\r') {
+            previousLineIsTag = b == '[';
+            lineStartSeen = true;
+          }
+        }
+        if (b == '\n') atLineStart = true;
+      }
+      position += n;
+    }
+    return size;
+  }
+
+  private int readWindow(ByteBuffer buf, int stopBefore, boolean eof) {
+    int limit = buf.limit();
+    int p = 0;
+    while (true) {
+      int gameStart = skipWhitespace(buf, p, limit);
+      if (gameStart >= limit || gameStart >= stopBefore) {
+        return gameStart;
+      }
+      int gameEnd = findGameEnd(buf, gameStart, limit, eof);
+      if (gameEnd < 0) {
+        return p;
+      }
+      readGame(buf, gameStart, gameEnd);
+      p = gameEnd;
+    }
+  }
+
+  private static int findGameEnd(ByteBuffer buf, int p, int limit, boolean eof) {
+    boolean inTags = true;
+    boolean inComment = false;
+    for (int i = p; i < limit; i++) {
+      byte b = buf.get(i);
+      if (inComment) {
+        if (b == '}') inComment = false;
+        continue;
+      }
+      if (b == '{') {
+        inComment = true;
+        continue;
+      }
+      boolean lineStart = i == p || buf.get(i - 1) == '\n';
+      if (!lineStart || b == '\n' || b == '\r' || b == ' ' || b == '\t') continue;
+      if (b == '[') {
+        if (!inTags) return i;
+      } else {
+        inTags = false;
+      }
+    }
+    return eof ? limit : -1;
+  }
+
+  private void readGame(ByteBuffer buf, int p, int end) {
+    board.init();
+    listener.startGame();
+    int result = UNKNOWN;
+    int tagResult = UNKNOWN;
+    p = skipWhitespace(buf, p, end);
+    while (p < end && buf.get(p) == '[') {
+      int nameStart = p + 1;
+      int nameEnd = nameStart;
+      while (nameEnd < end && buf.get(nameEnd) > ' ' && buf.get(nameEnd) != '"') nameEnd++;
+      int valueStart = nameEnd;
+      while (valueStart < end && buf.get(valueStart) != '"' && buf.get(valueStart) != '\n') {
+        valueStart++;
+      }
+      int valueEnd = valueStart + 1;
+      while (valueEnd < end && buf.get(valueEnd) != '"' && buf.get(valueEnd) != '\n') {
+        if (buf.get(valueEnd) == '\\') valueEnd++;
+        valueEnd++;
+      }
+      if (valueStart < end && buf.get(valueStart) == '"') {
+        token.set(buf, nameStart, nameEnd);
+        tagValue.set(buf, valueStart + 1, Math.min(valueEnd, end));
+        listener.tag(token, tagValue);
+        if (token.contentEquals("FEN")) {
+          try {
+            copyPosition(Board.fromFen(tagValue));
+          } catch (IllegalArgumentException ex) {
+            listener.endGame(UNKNOWN, board, false);
+            return;
+          }
+        } else if (token.contentEquals("Result")) {
+          tagResult = parseResult(tagValue);
+        }
+      }
+      while (p < end && buf.get(p) != '\n') p++;
+      p = skipWhitespace(buf, p, end);
+    }
+
+    boolean complete = true;
+    while (p < end) {
+      byte b = buf.get(p);
+      if (b <= ' ') {
+        p++;
+      } else if (b == '{') {
+        while (p < end && buf.get(p) != '}') p++;
+        p++;
+      } else if (b == ';' || (b == '%' && (p == 0 || buf.get(p - 1) == '\n'))) {
+        while (p < end && buf.get(p) != '\n') p++;
+      } else if (b == '(') {
+        p = skipVariation(buf, p, end);
+      } else if (b == '$') {
+        p++;
+        while (p < end && Character.isDigit(buf.get(p))) p++;
+      } else if (b == '*') {
+        p++;
+      } else {
+        int tokenEnd = p;
+        while (tokenEnd < end && !isDelimiter(buf.get(tokenEnd))) tokenEnd++;
+        token.set(buf, p, tokenEnd);
+        if (b >= '1' && b <= '9' || (b == '0' && !isZeroCastling(token))) {
+          int parsed = parseResult(token);
+          if (parsed != UNKNOWN) {
+            result = parsed;
+            p = tokenEnd;
+            continue;
+          }
+          while (p < tokenEnd && (Character.isDigit(buf.get(p)) || buf.get(p) == '.')) p++;
+          if (p == tokenEnd) continue;
+          token.set(buf, p, tokenEnd);
+        }
+        if (complete && !(token.length() > 0 && token.charAt(0) == '.')) {
+          Move move = San.parse(board, board.sideToMove(), token);
+          if (move == null) {
+            complete = false;
+          } else {
+            listener.move(board, move);
+            board.applyMove(move);
+          }
+        }
+        p = tokenEnd;
+      }
+    }
+    listener.endGame(result != UNKNOWN ? result : tagResult, board, complete);
+  }
+
+  private void copyPosition(Board start) {
+    board.clear();
+    for (int r = 0; r < 8; r++) {
+      for (int c = 0; c < 8; c++) {
+        board.place(r, c, start.at(r, c));
+      }
+    }
+    board.setCastlingRights(start.castlingRights());
+    board.setSideToMove(start.sideToMove());
+    board.setHalfmoveClock(start.halfmoveClock());
+  }
+
+  private static int skipVariation(ByteBuffer buf, int p, int end) {
+    int depth = 0;
+    while (p < end) {
+      byte b = buf.get(p++);
+      if (b == '{') {
+        while (p < end && buf.get(p) != '}') p++;
+        p++;
+      } else if (b == '(') {
+        depth++;
+      } else if (b == ')' && --depth == 0) {
+        break;
+      }
+    }
+    return p;
+  }
+
+  private static int parseResult(CharSequence s) {
+    if (s.length() == 3 && s.charAt(1) == '-') {
+      if (s.charAt(0) == '1' && s.charAt(2) == '0') return WHITE_WINS;
+      if (s.charAt(0) == '0' && s.charAt(2) == '1') return BLACK_WINS;
+    }
+    if (s.length() == 7 && s.charAt(0) == '1' && s.charAt(1) == '/' && s.charAt(3) == '-') {
+      return DRAW;
+    }
+    return UNKNOWN;
+  }
+
+  private static boolean isZeroCastling(CharSequence s) {
+    return s.length() >= 3 && s.charAt(1) == '-' && s.charAt(2) == '0';
+  }
+
+  private static boolean isDelimiter(byte b) {
+    return b <= ' ' || b == '{' || b == '(' || b == ')' || b == ';' || b == '$';
+  }
+
+  private static int skipWhitespace(ByteBuffer buf, int p, int limit) {
+    while (p < limit && buf.get(p) <= ' ') p++;
+    return p;
+  }
+
+  /** Reusable character view over a range of a byte buffer (ASCII/Latin-1). */
+  static final class ByteSlice implements CharSequence {
+    private ByteBuffer buf;
+    private int start;
+    private int length;
+
+    void set(ByteBuffer buf, int start, int end) {
+      this.buf = buf;
+      this.start = start;
+      this.length = Math.max(0, end - start);
+    }
+
+    boolean contentEquals(String s) {
+      if (s.length() != length) return false;
+      for (int i = 0; i < length; i++) {
+        if (s.charAt(i) != charAt(i)) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) (buf.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      return toString().substring(from, to);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder(length);
+      for (int i = 0; i < length; i++) sb.append(charAt(i));
+      return sb.toString();
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.out.println("Usage: PgnReader <games.pgn> [threads]");
+      return;
+    }
+    Path path = Path.of(args[0]);
+    int threads =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    List<Counter> counters = new ArrayList<>();
+    long start = System.nanoTime();
+    readParallel(
+        path,
+        threads,
+        () -> {
+          Counter counter = new Counter();
+          counters.add(counter);
+          return counter;
+        });
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long games = 0;
+    long moves = 0;
+    long broken = 0;
+    for (Counter counter : counters) {
+      games += counter.games;
+      moves += counter.moves;
+      broken += counter.broken;
+    }
+    System.out.printf(
+        "%,d games, %,d moves, %,d with unreadable moves in %.2fs (%,.0f moves/s)%n",
+        games, moves, broken, seconds, moves / seconds);
+  }
+
+  private static final class Counter implements Listener {
+    long games;
+    long moves;
+    long broken;
+
+    @Override
+    public void move(Board before, Move move) {
+      moves++;
+    }
+
+    @Override
+    public void endGame(int result, Board board, boolean complete) {
+      games++;
+      if (!complete) broken++;
+    }
+  }
+}
@@ -1,12 +1,29 @@
 public class Piece {
+    private static final int TYPE_COUNT = PieceType.values().length;
+    private static final Piece[] SHARED = new Piece[PlayerColor.values().length * TYPE_COUNT];
+
+    static {
+        for (PlayerColor color : PlayerColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                SHARED[color.ordinal() * TYPE_COUNT + type.ordinal()] = new Piece(type, color);
+            }
+        }
+    }
+
     private final PieceType type;
     private final PlayerColor color;
 
-    public Piece(PieceType type, PlayerColor color) {
+    /** Use {@link #of}; the twelve shared instances are the only pieces. */
+    private Piece(PieceType type, PlayerColor color) {
         this.type = type;
         this.color = color;
     }
 
+    /** Returns the shared instance for this type and color; pieces are immutable, so boards share them. */
+    public static Piece of(PieceType type, PlayerColor color) {
+        return SHARED[color.ordinal() * TYPE_COUNT + type.ordinal()];
+    }
+
     public PieceType getType() {
         return type;
     }
@@ -27,6 +44,20 @@ public class Piece {
         return color == PlayerColor.WHITE ? c : Character.toLowerCase(c);
     }
 
+    public static Piece fromSymbol(char symbol) {
+        PlayerColor color = Character.isUpperCase(symbol) ? PlayerColor.WHITE : PlayerColor.BLACK;
+        PieceType type = switch (Character.toUpperCase(symbol)) {
+            case 'K' -> PieceType.KING;
+            case 'Q' -> PieceType.QUEEN;
+            case 'R' -> PieceType.ROOK;
+            case 'B' -> PieceType.BISHOP;
+            case 'N' -> PieceType.KNIGHT;
+            case 'P' -> PieceType.PAWN;
+            default -> null;
+        };
+        return type == null ? null : of(type, color);
+    }
+
     @Override
     public String toString() {
         return String.valueOf(symbol());
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed 32-byte encoding of a {@link Board}, for training data, explorers and caches. Records are
+ * little-endian:
+ *
+ * <pre>
+ *   0  long   occupancy, bit r * 8 + c set for each occupied square
+ *   8  16 B   4-bit piece codes (color * 6 + type ordinal) of the occupied squares in ascending
+ *             order, low nibble first
+ *   24 byte   castling rights as in {@link Board#castlingRights()}, bit 4 set when Black is to move
+ *   25 byte   halfmove clock, capped at 255
+ *   26 short  fullmove number
+ *   28 int    payload for the caller, such as a game result or score
+ * </pre>
+ *
+ * Encoding and decoding work on buffers in place and reuse the caller's board, so converting a
+ * mapped file allocates nothing per position.
+ *
+ * <pre>
+ *   PositionCodec convert old-training.bin training.bin
+ * </pre>
+ */
+public final class PositionCodec {
+  public static final int RECORD_BYTES = 32;
+
+  private static final int FLAGS = 24;
+  private static final int HALFMOVE = 25;
+  private static final int FULLMOVE = 26;
+  private static final int PAYLOAD = 28;
+  private static final int BLACK_TO_MOVE = 16;
+  private static final int TYPES = PieceType.values().length;
+  private static final Piece[] PIECES = new Piece[2 * TYPES];
+
+  static {
+    for (PlayerColor color : PlayerColor.values()) {
+      for (PieceType type : PieceType.values()) {
+        PIECES[color.ordinal() * TYPES + type.ordinal()] = Piece.of(type, color);
+      }
+    }
+  }
+
+  private PositionCodec() {}
+
+  /**
+   * Writes {@code board} and {@code payload} at {@code offset} of {@code out}, which must be
+   * little-endian. Throws IllegalArgumentException for more than 32 pieces.
+   */
+  public static void encode(Board board, int payload, ByteBuffer out, int offset) {
+    long occupancy = 0;
+    long low = 0;
+    long high = 0;
+    int count = 0;
+    for (int sq = 0; sq < 64; sq++) {
+      Piece piece = board.at(sq / 8, sq % 8);
+      if (piece == null) continue;
+      if (count == 32) throw new IllegalArgumentException("More than 32 pieces on the board");
+      long code = piece.getColor().ordinal() * TYPES + piece.getType().ordinal();
+      if (count < 16) {
+        low |= code << (count * 4);
+      } else {
+        high |= code << ((count - 16) * 4);
+      }
+      occupancy |= 1L << sq;
+      count++;
+    }
+    int flags = board.castlingRights();
+    if (board.sideToMove() == PlayerColor.BLACK) flags |= BLACK_TO_MOVE;
+    out.putLong(offset, occupancy);
+    out.putLong(offset + 8, low);
+    out.putLong(offset + 16, high);
+    out.put(offset + FLAGS, (byte) flags);
+    out.put(offset + HALFMOVE, (byte) Math.min(board.halfmoveClock(), 255));
+    out.putShort(offset + FULLMOVE, (short) Math.min(board.fullmoveNumber(), 0xFFFF));
+    out.putInt(offset + PAYLOAD, payload);
+  }
+
+  /** Writes {@code board} at the buffer's position and advances it by one record. */
+  public static void encode(Board board, int payload, ByteBuffer out) {
+    encode(board, payload, out, out.position());
+    out.position(out.position() + RECORD_BYTES);
+  }
+
+  /** Replaces the contents of {@code board} with the record at {@code offset} of {@code in}. */
+  public static void decode(ByteBuffer in, int offset, Board board) {
+    board.clear();
+    long occupancy = in.getLong(offset);
+    long low = in.getLong(offset + 8);
+    long high = in.getLong(offset + 16);
+    int count = 0;
+    while (occupancy != 0) {
+      if (count == 32) throw new IllegalArgumentException("More than 32 occupied squares");
+      int sq = Long.numberOfTrailingZeros(occupancy);
+      occupancy &= occupancy - 1;
+      long codes = count < 16 ? low >>> (count * 4) : high >>> ((count - 16) * 4);
+      int code = (int) codes & 15;
+      if (code >= PIECES.length) throw new IllegalArgumentException("Bad piece code " + code);
+      board.place(sq / 8, sq % 8, PIECES[code]);
+      count++;
+    }
+    int flags = in.get(offset + FLAGS);
+    board.setCastlingRights(flags & 15);
+    board.setSideToMove((flags & BLACK_TO_MOVE) != 0 ? PlayerColor.BLACK : PlayerColor.WHITE);
+    board.setHalfmoveClock(in.get(offset + HALFMOVE) & 0xFF);
+    board.setFullmoveNumber(Math.max(1, in.getShort(offset + FULLMOVE) & 0xFFFF));
+  }
+
+  public static int payload(ByteBuffer in, int offset) {
+    return in.getInt(offset + PAYLOAD);
+  }
+
+  /**
+   * Rewrites a {@link TexelTuner} training file of 66-byte records as 32-byte records, a mapped
+   * window at a time. The result byte becomes the payload.
+   */
+  static long convertTexel(Path from, Path to) throws IOException {
+    try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+        FileChannel out =
+            FileChannel.open(
+                to,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+      in.read(header, 0);
+      if (in.size() < 4 || header.getInt(0) != TexelTuner.LEGACY_MAGIC) {
+        throw new IOException("Not a 66-byte Texel training file: " + from);
+      }
+      long records = (in.size() - 4) / TexelTuner.LEGACY_RECORD_BYTES;
+      header.clear();
+      header.putInt(TexelTuner.MAGIC).flip();
+      out.write(header, 0);
+      Board board = new Board();
+      int window = 1 << 20;
+      for (long first = 0; first < records; first += window) {
+        int n = (int) Math.min(window, records - first);
+        MappedByteBuffer src =
+            in.map(
+                FileChannel.MapMode.READ_ONLY,
+                4 + first * TexelTuner.LEGACY_RECORD_BYTES,
+                (long) n * TexelTuner.LEGACY_RECORD_BYTES);
+        MappedByteBuffer dst =
+            out.map(
+                FileChannel.MapMode.READ_WRITE,
+                TexelTuner.HEADER_BYTES + first * RECORD_BYTES,
+                (long) n * RECORD_BYTES);
+        dst.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; i++) {
+          int offset = i * TexelTuner.LEGACY_RECORD_BYTES;
+          TexelTuner.decodeLegacy(src, offset, board);
+          encode(board, src.get(offset + 65), dst, i * RECORD_BYTES);
+        }
+        dst.force();
+      }
+      return records;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3 || !args[0].equals("convert")) {
+      System.out.println("Usage: PositionCodec convert <old-training.bin> <training.bin>");
+      return;
+    }
+    long start = System.nanoTime();
+    long records = convertTexel(Path.of(args[1]), Path.of(args[2]));
+    System.out.printf(
+        "Converted %,d positions in %.1fs%n", records, (System.nanoTime() - start) / 1e9);
+  }
+}
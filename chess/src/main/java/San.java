@@ -0,0 +1,150 @@
+/** Standard algebraic notation against a {@link Board}'s legal moves. */
+public final class San {
+  private San() {}
+
+  public static Move parse(Board board, PlayerColor color, CharSequence san) {
+    return parse(board, color, san, 0, san.length());
+  }
+
+  /**
+   * Resolves the SAN token {@code san[start, end)} to one of {@code color}'s legal moves, or
+   * returns {@code null} if it is malformed, ambiguous or illegal. Under-promotions are rejected
+   * because the board always promotes to a queen. Only the named piece type is generated and
+   * checked for legality, so this is much cheaper than building the full legal move list.
+   */
+  public static Move parse(Board board, PlayerColor color, CharSequence san, int start, int end) {
+    while (end > start && isAnnotation(san.charAt(end - 1))) end--;
+    if (end - start < 2) return null;
+
+    char first = san.charAt(start);
+    if (first == 'O' || first == '0') {
+      LegalMoveIndex legal = board.legalMoveIndex(color);
+      int row = color == PlayerColor.WHITE ? 7 : 0;
+      int length = end - start;
+      int tc = length == 3 ? 6 : length == 5 ? 2 : -1;
+      if (tc < 0 || !legal.isLegal(row, 4, row, tc)) return null;
+      Piece king = board.at(row, 4);
+      return king != null && king.getType() == PieceType.KING ? new Move(row, 4, row, tc) : null;
+    }
+
+    PieceType type = PieceType.PAWN;
+    int i = start;
+    switch (first) {
+      case 'K' -> type = PieceType.KING;
+      case 'Q' -> type = PieceType.QUEEN;
+      case 'R' -> type = PieceType.ROOK;
+      case 'B' -> type = PieceType.BISHOP;
+      case 'N' -> type = PieceType.KNIGHT;
+      default -> i--;
+    }
+    i++;
+
+    int promoEnd = end;
+    if (type == PieceType.PAWN && end - start >= 3) {
+      char last = san.charAt(end - 1);
+      if (last >= 'A' && last <= 'Z') {
+        if (last != 'Q') return null;
+        promoEnd = san.charAt(end - 2) == '=' ? end - 2 : end - 1;
+      }
+    }
+    if (promoEnd - i < 2) return null;
+    int tc = san.charAt(promoEnd - 2) - 'a';
+    int tr = '8' - san.charAt(promoEnd - 1);
+    if (tc < 0 || tc > 7 || tr < 0 || tr > 7) return null;
+
+    int fileHint = -1;
+    int rankHint = -1;
+    for (int j = i; j < promoEnd - 2; j++) {
+      char ch = san.charAt(j);
+      if (ch >= 'a' && ch <= 'h') {
+        fileHint = ch - 'a';
+      } else if (ch >= '1' && ch <= '8') {
+        rankHint = '8' - ch;
+      } else if (ch != 'x' && ch != ':' && ch != '-') {
+        return null;
+      }
+    }
+
+    Move found = null;
+    for (int r = 0; r < 8; r++) {
+      if (rankHint >= 0 && r != rankHint) continue;
+      for (int c = 0; c < 8; c++) {
+        if (fileHint >= 0 && c != fileHint) continue;
+        Piece piece = board.at(r, c);
+        if (piece == null || piece.getType() != type || piece.getColor() != color) continue;
+        for (Move move : board.generatePseudoMoves(r, c)) {
+          if (move.tr == tr && move.tc == tc && board.keepsKingSafe(move, color)) {
+            if (found != null) return null;
+            found = move;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  public static String format(Board board, Move move) {
+    StringBuilder sb = new StringBuilder(8);
+    appendTo(sb, board, move);
+    return sb.toString();
+  }
+
+  /** Appends {@code move}, which must be legal in {@code board}, including check and mate marks. */
+  public static void appendTo(StringBuilder sb, Board board, Move move) {
+    Piece piece = board.at(move.fr, move.fc);
+    if (piece == null) return;
+    PlayerColor color = piece.getColor();
+    if (piece.getType() == PieceType.KING && Math.abs(move.tc - move.fc) == 2) {
+      sb.append(move.tc > move.fc ? "O-O" : "O-O-O");
+    } else {
+      boolean capture = board.at(move.tr, move.tc) != null;
+      if (piece.getType() == PieceType.PAWN) {
+        if (capture) sb.append((char) ('a' + move.fc)).append('x');
+      } else {
+        sb.append(Character.toUpperCase(piece.symbol()));
+        appendDisambiguation(sb, board, move, piece);
+        if (capture) sb.append('x');
+      }
+      sb.append((char) ('a' + move.tc)).append((char) ('8' - move.tr));
+      if (piece.getType() == PieceType.PAWN && (move.tr == 0 || move.tr == 7)) {
+        sb.append("=Q");
+      }
+    }
+    Board after = board.copy();
+    after.applyMove(move);
+    PlayerColor opponent = color.opponent();
+    if (after.isKingInCheck(opponent)) {
+      sb.append(after.legalMoveIndex(opponent).isEmpty() ? '#' : '+');
+    }
+  }
+
+  private static void appendDisambiguation(StringBuilder sb, Board board, Move move, Piece piece) {
+    LegalMoveIndex legal = board.legalMoveIndex(piece.getColor());
+    long targetBit = 1L << (move.tr * 8 + move.tc);
+    boolean ambiguous = false;
+    boolean sameFile = false;
+    boolean sameRank = false;
+    for (int sq = 0; sq < 64; sq++) {
+      int r = sq / 8;
+      int c = sq % 8;
+      if ((r == move.fr && c == move.fc) || (legal.targets(sq) & targetBit) == 0) continue;
+      Piece other = board.at(r, c);
+      if (other == null || other.getType() != piece.getType()) continue;
+      ambiguous = true;
+      if (c == move.fc) sameFile = true;
+      if (r == move.fr) sameRank = true;
+    }
+    if (!ambiguous) return;
+    if (!sameFile) {
+      sb.append((char) ('a' + move.fc));
+    } else if (!sameRank) {
+      sb.append((char) ('8' - move.fr));
+    } else {
+      sb.append((char) ('a' + move.fc)).append((char) ('8' - move.fr));
+    }
+  }
+
+  private static boolean isAnnotation(char ch) {
+    return ch == '+' || ch == '#' || ch == '!' || ch == '?';
+  }
+}
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Tunable knobs of {@link ChessAI}'s search: the futility margin at frontier nodes, the late move
+ * reduction table and the aspiration window of node-limited searches. Margins are in pawns.
+ */
+public final class SearchParams {
+  public static final String[] NAMES = {
+    "futilityMargin", "reductionBase", "reductionDivisor", "aspirationWindow"
+  };
+  public static final int COUNT = NAMES.length;
+
+  public static final int FUTILITY_MARGIN = 0;
+  public static final int REDUCTION_BASE = 1;
+  public static final int REDUCTION_DIVISOR = 2;
+  public static final int ASPIRATION_WINDOW = 3;
+
+  public static final SearchParams DEFAULT = new SearchParams(new double[] {1.5, 0.5, 2.5, 0.5});
+
+  private static final int TABLE_SIZE = 64;
+
+  private static SearchParams startup;
+
+  private final double[] values;
+  private final byte[][] reductions = new byte[TABLE_SIZE][TABLE_SIZE];
+
+  public SearchParams(double[] values) {
+    if (values.length != COUNT) {
+      throw new IllegalArgumentException("Expected " + COUNT + " parameters, got " + values.length);
+    }
+    if (values[REDUCTION_DIVISOR] <= 0) {
+      throw new IllegalArgumentException("reductionDivisor must be positive");
+    }
+    this.values = values.clone();
+    for (int depth = 1; depth < TABLE_SIZE; depth++) {
+      for (int index = 1; index < TABLE_SIZE; index++) {
+        double r =
+            values[REDUCTION_BASE]
+                + Math.log(depth) * Math.log(index) / values[REDUCTION_DIVISOR];
+        reductions[depth][index] = (byte) Math.clamp((long) r, 0, depth - 1);
+      }
+    }
+  }
+
+  public double get(int index) {
+    return values[index];
+  }
+
+  public double[] toArray() {
+    return values.clone();
+  }
+
+  public double futilityMargin() {
+    return values[FUTILITY_MARGIN];
+  }
+
+  public double aspirationWindow() {
+    return values[ASPIRATION_WINDOW];
+  }
+
+  /** Plies to take off the {@code index}-th move (from 0) at {@code depth}; less than depth. */
+  public int reduction(int depth, int index) {
+    return reductions[Math.min(depth, TABLE_SIZE - 1)][Math.min(index, TABLE_SIZE - 1)];
+  }
+
+  /**
+   * Parameters used by AIs created without explicit ones: the file named by {@code -Dchess.search},
+   * else {@code search-params.properties} in the working directory, else {@link #DEFAULT}.
+   */
+  public static synchronized SearchParams startup() {
+    if (startup == null) {
+      Path path = Path.of(System.getProperty("chess.search", "search-params.properties"));
+      if (Files.isRegularFile(path)) {
+        try {
+          startup = load(path);
+        } catch (IOException | IllegalArgumentException ex) {
+          System.err.println("Ignoring search parameters " + path + ": " + ex.getMessage());
+          startup = DEFAULT;
+        }
+      } else {
+        startup = DEFAULT;
+      }
+    }
+    return startup;
+  }
+
+  public static SearchParams load(Path path) throws IOException {
+    Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(path)) {
+      props.load(reader);
+    }
+    double[] values = DEFAULT.toArray();
+    for (int i = 0; i < COUNT; i++) {
+      String value = props.getProperty(NAMES[i]);
+      if (value != null) {
+        values[i] = Double.parseDouble(value.trim());
+      }
+    }
+    return new SearchParams(values);
+  }
+
+  public void save(Path path, String comment) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(path)) {
+      writer.write("# " + comment + System.lineSeparator());
+      for (int i = 0; i < COUNT; i++) {
+        writer.write(NAMES[i] + "=" + values[i] + System.lineSeparator());
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < COUNT; i++) {
+      if (i > 0) sb.append(", ");
+      sb.append(NAMES[i]).append('=').append(String.format("%.4f", values[i]));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,137 @@
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+
+/**
+ * Piece sprites pre-scaled to one cell size and stored as raw ARGB pixels, so startup needs a
+ * single resource read instead of decoding and rescaling twelve PNGs.
+ *
+ * <p>Layout (little-endian): magic {@code "SPRT"}, cell size, sprite count, then {@code cell *
+ * cell} ARGB ints per sprite ordered by {@link PlayerColor} then {@link PieceType}. Regenerate
+ * after changing the PNGs with {@code java -cp build/classes/java/main SpriteAtlas}.
+ */
+public final class SpriteAtlas {
+  static final String RESOURCE = "/icons/pieces.atlas";
+  static final int MAGIC = 0x54525053;
+  static final int HEADER_BYTES = 12;
+
+  private SpriteAtlas() {}
+
+  /** Loads the prebuilt atlas, falling back to the PNG sprites when it is missing or stale. */
+  public static EnumMap<PlayerColor, EnumMap<PieceType, Image>> load(int cell) {
+    try (InputStream in = SpriteAtlas.class.getResourceAsStream(RESOURCE)) {
+      if (in != null) {
+        EnumMap<PlayerColor, EnumMap<PieceType, Image>> sprites = read(in, cell);
+        if (sprites != null) {
+          return sprites;
+        }
+      }
+    } catch (IOException ex) {
+      // fall back to decoding the PNG sprites
+    }
+    return renderPngs(cell);
+  }
+
+  private static EnumMap<PlayerColor, EnumMap<PieceType, Image>> read(InputStream in, int cell)
+      throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    byte[] headerBytes = new byte[HEADER_BYTES];
+    data.readFully(headerBytes);
+    ByteBuffer header = ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+    int count = PlayerColor.values().length * PieceType.values().length;
+    if (header.getInt() != MAGIC || header.getInt() != cell || header.getInt() != count) {
+      return null;
+    }
+    byte[] pixels = new byte[cell * cell * 4];
+    EnumMap<PlayerColor, EnumMap<PieceType, Image>> sprites = new EnumMap<>(PlayerColor.class);
+    for (PlayerColor color : PlayerColor.values()) {
+      EnumMap<PieceType, Image> byType = new EnumMap<>(PieceType.class);
+      for (PieceType type : PieceType.values()) {
+        data.readFully(pixels);
+        BufferedImage image = new BufferedImage(cell, cell, BufferedImage.TYPE_INT_ARGB);
+        int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ByteBuffer.wrap(pixels).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(raster);
+        byType.put(type, image);
+      }
+      sprites.put(color, byType);
+    }
+    return sprites;
+  }
+
+  static EnumMap<PlayerColor, EnumMap<PieceType, Image>> renderPngs(int cell) {
+    EnumMap<PlayerColor, EnumMap<PieceType, Image>> sprites = new EnumMap<>(PlayerColor.class);
+    for (PlayerColor color : PlayerColor.values()) {
+      EnumMap<PieceType, Image> byType = new EnumMap<>(PieceType.class);
+      for (PieceType type : PieceType.values()) {
+        String resourceName =
+            "/icons/"
+                + (color == PlayerColor.WHITE ? "white" : "black")
+                + "_"
+                + type.name().toLowerCase()
+                + ".png";
+        byType.put(type, renderPng(resourceName, cell));
+      }
+      sprites.put(color, byType);
+    }
+    return sprites;
+  }
+
+  private static BufferedImage renderPng(String resourcePath, int cell) {
+    URL resource = SpriteAtlas.class.getResource(resourcePath);
+    if (resource == null) {
+      throw new IllegalStateException("Missing resource: " + resourcePath);
+    }
+    ImageIcon original = new ImageIcon(resource);
+    int width = original.getIconWidth();
+    int height = original.getIconHeight();
+    BufferedImage canvas = new BufferedImage(cell, cell, BufferedImage.TYPE_INT_ARGB);
+    if (width <= 0 || height <= 0) {
+      return canvas;
+    }
+    double scale = Math.min((double) cell / width, (double) cell / height);
+    int scaledW = (int) Math.round(width * scale);
+    int scaledH = (int) Math.round(height * scale);
+    Graphics2D g2 = canvas.createGraphics();
+    g2.setRenderingHint(
+        RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    int x = (cell - scaledW) / 2;
+    int y = (cell - scaledH) / 2;
+    g2.drawImage(original.getImage(), x, y, scaledW, scaledH, null);
+    g2.dispose();
+    return canvas;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path out = Path.of(args.length > 0 ? args[0] : "src/main/resources" + RESOURCE);
+    int cell = args.length > 1 ? Integer.parseInt(args[1]) : BoardView.DEFAULT_SQUARE_SIZE;
+    EnumMap<PlayerColor, EnumMap<PieceType, Image>> sprites = renderPngs(cell);
+    int count = PlayerColor.values().length * PieceType.values().length;
+    ByteBuffer buf =
+        ByteBuffer.allocate(HEADER_BYTES + count * cell * cell * 4).order(ByteOrder.LITTLE_ENDIAN);
+    buf.putInt(MAGIC).putInt(cell).putInt(count);
+    for (PlayerColor color : PlayerColor.values()) {
+      for (PieceType type : PieceType.values()) {
+        BufferedImage image = (BufferedImage) sprites.get(color).get(type);
+        for (int argb : image.getRGB(0, 0, cell, cell, null, 0, cell)) {
+          buf.putInt(argb);
+        }
+      }
+    }
+    Files.write(out, buf.array());
+    System.out.println("Wrote " + count + " sprites of " + cell + "px to " + out);
+  }
+}
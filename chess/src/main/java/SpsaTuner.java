@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SPSA tuning of {@link SearchParams} and the check weight of {@link EvalWeights} by self-play.
+ * Each iteration perturbs every knob up or down at random, plays pairs of node-limited games
+ * between the two perturbed settings from the same random openings with colours swapped, and moves
+ * the parameters towards the side that scored better. Games run in parallel; the parameters and
+ * iteration count are checkpointed after every iteration, so an interrupted run resumes where it
+ * stopped.
+ *
+ * <pre>
+ *   SpsaTuner checkpoint.properties [iterations] [nodesPerMove] [threads]
+ * </pre>
+ *
+ * When the run completes the tuned values are also written next to the checkpoint, named after
+ * it: {@code run.properties} gives {@code run.search-params.properties} and {@code
+ * run.eval-weights.properties}. They are not picked up until copied over the working directory's
+ * files or named by {@code -Dchess.search} and {@code -Dchess.weights}, so a run never replaces
+ * the settings in use.
+ */
+public final class SpsaTuner {
+  /** A tuned value with its allowed range and initial perturbation size. */
+  record Knob(String name, double min, double max, double step) {}
+
+  static final Knob[] KNOBS = {
+    new Knob("futilityMargin", 0.1, 5.0, 0.3),
+    new Knob("reductionBase", -1.0, 2.0, 0.2),
+    new Knob("reductionDivisor", 1.0, 6.0, 0.3),
+    new Knob("aspirationWindow", 0.1, 3.0, 0.15),
+    new Knob("check", 0.0, 2.0, 0.1),
+  };
+
+  private static final double LEARNING_RATE = 0.25;
+  private static final double STABILITY = 50;
+  private static final int OPENING_PLIES = 6;
+  private static final int MAX_PLIES = 200;
+  private static final double ADJUDICATION_MARGIN = 3.0;
+
+  private SpsaTuner() {}
+
+  public static void main(String[] args)
+      throws IOException, InterruptedException, ExecutionException {
+    if (args.length < 1) {
+      System.out.println(
+          "Usage: SpsaTuner <checkpoint.properties> [iterations] [nodesPerMove] [threads]");
+      return;
+    }
+    Path checkpoint = Path.of(args[0]);
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    long nodesPerMove = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+    int threads =
+        args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    double[] theta = initialValues();
+    int first = 0;
+    if (Files.isRegularFile(checkpoint)) {
+      first = loadCheckpoint(checkpoint, theta);
+      System.out.printf("Resuming at iteration %d from %s%n", first, checkpoint);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (int k = first; k < iterations; k++) {
+        long start = System.nanoTime();
+        Random random = new Random(k * 0x9E3779B97F4A7C15L);
+        double ck = 1.0 / Math.pow(k + 1, 0.101);
+        double ak = LEARNING_RATE / Math.pow(k + 1 + STABILITY, 0.602);
+        int[] delta = new int[KNOBS.length];
+        double[] plus = new double[KNOBS.length];
+        double[] minus = new double[KNOBS.length];
+        for (int i = 0; i < KNOBS.length; i++) {
+          delta[i] = random.nextBoolean() ? 1 : -1;
+          plus[i] = clamp(i, theta[i] + ck * KNOBS[i].step() * delta[i]);
+          minus[i] = clamp(i, theta[i] - ck * KNOBS[i].step() * delta[i]);
+        }
+
+        // one pair per thread; each opening is played once with either setting as White
+        List<Future<Integer>> games = new ArrayList<>();
+        for (int pair = 0; pair < threads; pair++) {
+          long seed = random.nextLong();
+          games.add(pool.submit(() -> playGame(plus, minus, seed, nodesPerMove)));
+          games.add(pool.submit(() -> -playGame(minus, plus, seed, nodesPerMove)));
+        }
+        int balance = 0;
+        for (Future<Integer> game : games) balance += game.get();
+
+        for (int i = 0; i < KNOBS.length; i++) {
+          theta[i] = clamp(i, theta[i] + ak / ck * KNOBS[i].step() * delta[i] * balance);
+        }
+        saveCheckpoint(checkpoint, k + 1, theta);
+        System.out.printf(
+            "iteration %d: balance %+d over %d games in %.1fs  %s%n",
+            k + 1, balance, games.size(), (System.nanoTime() - start) / 1e9, describe(theta));
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    Path params = output(checkpoint, "search-params.properties");
+    Path weights = output(checkpoint, "eval-weights.properties");
+    searchParams(theta).save(params, "SPSA-tuned by self-play");
+    evalWeights(theta).save(weights, "Check weight SPSA-tuned");
+    System.out.printf("Wrote %s and %s%n", params, weights);
+  }
+
+  /**
+   * Plays one game from a random opening chosen by {@code seed}; returns +1 if the White settings
+   * won, -1 if they lost and 0 for a draw. Games that reach the ply limit are adjudicated on
+   * material.
+   */
+  static int playGame(double[] white, double[] black, long seed, long nodesPerMove) {
+    Random random = new Random(seed);
+    Board board = new Board();
+    for (int ply = 0; ply < OPENING_PLIES; ply++) {
+      List<Move> legal = board.legalMoveIndex(board.sideToMove()).moves();
+      if (legal.isEmpty()) return 0;
+      board.applyMove(legal.get(random.nextInt(legal.size())));
+    }
+    ChessAI whiteAi = newAi(white);
+    ChessAI blackAi = newAi(black);
+    for (int ply = 0; ply < MAX_PLIES; ply++) {
+      PlayerColor turn = board.sideToMove();
+      if (board.isThreefoldRepetition()
+          || board.isFiftyMoveDraw()
+          || board.isAutomaticDrawByInsufficientMaterial()) {
+        return 0;
+      }
+      ChessAI ai = turn == PlayerColor.WHITE ? whiteAi : blackAi;
+      Move move = ai.searchNodes(board, turn, nodesPerMove);
+      if (move == null) {
+        if (!board.isKingInCheck(turn)) return 0;
+        return turn == PlayerColor.WHITE ? -1 : 1;
+      }
+      board.applyMove(move);
+    }
+    double material = ChessAI.classicalEvaluation(board, EvalWeights.DEFAULT);
+    return material > ADJUDICATION_MARGIN ? 1 : material < -ADJUDICATION_MARGIN ? -1 : 0;
+  }
+
+  private static ChessAI newAi(double[] theta) {
+    // no shared transposition table: its entries would mix the two settings
+    return new ChessAI(
+        new EvalCache(1 << 14), null, evalWeights(theta), searchParams(theta), null);
+  }
+
+  static SearchParams searchParams(double[] theta) {
+    double[] values = new double[SearchParams.COUNT];
+    System.arraycopy(theta, 0, values, 0, SearchParams.COUNT);
+    return new SearchParams(values);
+  }
+
+  static EvalWeights evalWeights(double[] theta) {
+    double[] values = EvalWeights.startup().toArray();
+    values[EvalWeights.CHECK] = theta[SearchParams.COUNT];
+    return new EvalWeights(values);
+  }
+
+  private static double[] initialValues() {
+    double[] theta = new double[KNOBS.length];
+    System.arraycopy(SearchParams.startup().toArray(), 0, theta, 0, SearchParams.COUNT);
+    theta[SearchParams.COUNT] = EvalWeights.startup().get(EvalWeights.CHECK);
+    return theta;
+  }
+
+  /** {@code suffix} next to the checkpoint, after its name without the extension. */
+  static Path output(Path checkpoint, String suffix) {
+    String name = checkpoint.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    String stem = dot > 0 ? name.substring(0, dot) : name;
+    return checkpoint.resolveSibling(stem + "." + suffix);
+  }
+
+  private static double clamp(int knob, double value) {
+    return Math.clamp(value, KNOBS[knob].min(), KNOBS[knob].max());
+  }
+
+  private static int loadCheckpoint(Path path, double[] theta) throws IOException {
+    Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(path)) {
+      props.load(reader);
+    }
+    for (int i = 0; i < KNOBS.length; i++) {
+      String value = props.getProperty(KNOBS[i].name());
+      if (value != null) {
+        theta[i] = clamp(i, Double.parseDouble(value.trim()));
+      }
+    }
+    return Integer.parseInt(props.getProperty("iteration", "0").trim());
+  }
+
+  /** Writes a temporary file and renames it, so a crash never leaves a torn checkpoint. */
+  private static void saveCheckpoint(Path path, int iteration, double[] theta) throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (Writer writer = Files.newBufferedWriter(tmp)) {
+      writer.write("iteration=" + iteration + System.lineSeparator());
+      for (int i = 0; i < KNOBS.length; i++) {
+        writer.write(KNOBS[i].name() + "=" + theta[i] + System.lineSeparator());
+      }
+    }
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String describe(double[] theta) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < KNOBS.length; i++) {
+      if (i > 0) sb.append(", ");
+      sb.append(KNOBS[i].name()).append('=').append(String.format("%.3f", theta[i]));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Texel tuning of {@link EvalWeights} against game results.
+ *
+ * <p>Training files start with the magic {@code "TXL2"} followed by 32-byte {@link PositionCodec}
+ * records whose payload is the result (0 Black won, 1 draw, 2 White won). Files of the older
+ * {@code "TXL1"} layout are still read: 66-byte records of 64 square codes (row 0 = rank 8, 0
+ * empty, else {@code 1 + color * 6 + type}), the castling rights byte of {@link
+ * Board#castlingRights()} and the result. {@code PositionCodec convert} rewrites them.
+ *
+ * <pre>
+ *   TexelTuner tune training.bin [eval-weights.properties] [epochs]
+ *   TexelTuner generate training.bin games
+ * </pre>
+ */
+public class TexelTuner {
+  static final int MAGIC = 0x324C5854;
+  static final int LEGACY_MAGIC = 0x314C5854;
+  static final int HEADER_BYTES = 4;
+  static final int RECORD_BYTES = PositionCodec.RECORD_BYTES;
+  static final int LEGACY_RECORD_BYTES = 66;
+
+  private static final int WINDOW_RECORDS = 1 << 20;
+  private static final int BATCH = 8192;
+  private static final double LEARNING_RATE = 0.002;
+
+  private final int count;
+  private final float[] features;
+  private final float[] targets;
+
+  private TexelTuner(int count) {
+    this.count = count;
+    this.features = new float[count * EvalWeights.COUNT];
+    this.targets = new float[count];
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length >= 3 && args[0].equals("generate")) {
+      generate(Path.of(args[1]), Integer.parseInt(args[2]));
+      return;
+    }
+    if (args.length < 2 || !args[0].equals("tune")) {
+      System.out.println("Usage: TexelTuner tune <training.bin> [weights-out] [epochs]");
+      System.out.println("       TexelTuner generate <training.bin> <games>");
+      return;
+    }
+    Path out = Path.of(args.length > 2 ? args[2] : "eval-weights.properties");
+    int epochs = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+
+    long start = System.nanoTime();
+    TexelTuner tuner = load(Path.of(args[1]));
+    System.out.printf(
+        "Loaded %,d positions in %.1fs%n", tuner.count, (System.nanoTime() - start) / 1e9);
+
+    EvalWeights initial = EvalWeights.startup();
+    double k = tuner.fitScale(initial.toArray());
+    System.out.printf("Scale K=%.4f, initial error %.6f%n", k, tuner.error(initial.toArray(), k));
+    double[] tuned = tuner.optimise(initial.toArray(), k, epochs);
+    EvalWeights result = new EvalWeights(tuned);
+    System.out.printf("Final error %.6f%n%s%n", tuner.error(tuned, k), result);
+    result.save(out, "Texel-tuned on " + tuner.count + " positions, K=" + k);
+    System.out.println("Wrote " + out);
+  }
+
+  static TexelTuner load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      channel.read(header, 0);
+      boolean legacy = size >= HEADER_BYTES && header.getInt(0) == LEGACY_MAGIC;
+      if (size < HEADER_BYTES || (header.getInt(0) != MAGIC && !legacy)) {
+        throw new IOException("Not a Texel training file: " + path);
+      }
+      int recordBytes = legacy ? LEGACY_RECORD_BYTES : RECORD_BYTES;
+      long records = (size - HEADER_BYTES) / recordBytes;
+      if (records > Integer.MAX_VALUE / EvalWeights.COUNT) {
+        throw new IOException("Training file too large: " + records + " records");
+      }
+      TexelTuner tuner = new TexelTuner((int) records);
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+      for (long first = 0; first < records; first += WINDOW_RECORDS) {
+        int n = (int) Math.min(WINDOW_RECORDS, records - first);
+        MappedByteBuffer window =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                HEADER_BYTES + first * recordBytes,
+                (long) n * recordBytes);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        pool.invoke(tuner.new ExtractTask(window, legacy, (int) first, 0, n));
+      }
+      return tuner;
+    }
+  }
+
+  double fitScale(double[] weights) {
+    double lo = 0.05;
+    double hi = 5.0;
+    for (int i = 0; i < 60; i++) {
+      double m1 = lo + (hi - lo) / 3;
+      double m2 = hi - (hi - lo) / 3;
+      if (error(weights, m1) < error(weights, m2)) {
+        hi = m2;
+      } else {
+        lo = m1;
+      }
+    }
+    return (lo + hi) / 2;
+  }
+
+  double error(double[] weights, double k) {
+    return ForkJoinPool.commonPool().invoke(new GradientTask(weights, k, 0, count, false))[0]
+        / count;
+  }
+
+  double[] optimise(double[] weights, double k, int epochs) {
+    double[] w = weights.clone();
+    double[] m = new double[w.length];
+    double[] v = new double[w.length];
+    double beta1 = 0.9;
+    double beta2 = 0.999;
+    for (int epoch = 1; epoch <= epochs; epoch++) {
+      double[] sums = ForkJoinPool.commonPool().invoke(new GradientTask(w, k, 0, count, true));
+      for (int i = 0; i < w.length; i++) {
+        double g = sums[i + 1] / count;
+        m[i] = beta1 * m[i] + (1 - beta1) * g;
+        v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+        double mHat = m[i] / (1 - Math.pow(beta1, epoch));
+        double vHat = v[i] / (1 - Math.pow(beta2, epoch));
+        w[i] -= LEARNING_RATE * mHat / (Math.sqrt(vHat) + 1e-9);
+      }
+      if (epoch % 100 == 0) {
+        System.out.printf("epoch %d error %.6f%n", epoch, sums[0] / count);
+      }
+    }
+    return w;
+  }
+
+  private class ExtractTask extends RecursiveAction {
+    private final ByteBuffer window;
+    private final boolean legacy;
+    private final int base;
+    private final int from;
+    private final int to;
+
+    ExtractTask(ByteBuffer window, boolean legacy, int base, int from, int to) {
+      this.window = window;
+      this.legacy = legacy;
+      this.base = base;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > BATCH) {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new ExtractTask(window, legacy, base, from, mid),
+            new ExtractTask(window, legacy, base, mid, to));
+        return;
+      }
+      Board board = new Board();
+      double[] f = new double[EvalWeights.COUNT];
+      for (int i = from; i < to; i++) {
+        int result;
+        if (legacy) {
+          int offset = i * LEGACY_RECORD_BYTES;
+          decodeLegacy(window, offset, board);
+          result = window.get(offset + 65);
+        } else {
+          int offset = i * RECORD_BYTES;
+          PositionCodec.decode(window, offset, board);
+          result = PositionCodec.payload(window, offset);
+        }
+        ChessAI.evaluationFeatures(board, f);
+        int index = base + i;
+        for (int j = 0; j < f.length; j++) {
+          features[index * EvalWeights.COUNT + j] = (float) f[j];
+        }
+        targets[index] = result / 2.0f;
+      }
+    }
+  }
+
+  /** Sums squared error (slot 0) and, optionally, its gradient (slots 1..) over a range. */
+  private class GradientTask extends RecursiveTask<double[]> {
+    private final double[] weights;
+    private final double k;
+    private final int from;
+    private final int to;
+    private final boolean gradient;
+
+    GradientTask(double[] weights, double k, int from, int to, boolean gradient) {
+      this.weights = weights;
+      this.k = k;
+      this.from = from;
+      this.to = to;
+      this.gradient = gradient;
+    }
+
+    @Override
+    protected double[] compute() {
+      if (to - from > BATCH) {
+        int mid = (from + to) >>> 1;
+        GradientTask left = new GradientTask(weights, k, from, mid, gradient);
+        left.fork();
+        double[] right = new GradientTask(weights, k, mid, to, gradient).compute();
+        double[] sums = left.join();
+        for (int i = 0; i < sums.length; i++) {
+          sums[i] += right[i];
+        }
+        return sums;
+      }
+      int n = EvalWeights.COUNT;
+      double[] sums = new double[n + 1];
+      for (int i = from; i < to; i++) {
+        int base = i * n;
+        double eval = 0.0;
+        for (int j = 0; j < n; j++) {
+          eval += weights[j] * features[base + j];
+        }
+        double p = 1.0 / (1.0 + Math.exp(-k * eval));
+        double diff = targets[i] - p;
+        sums[0] += diff * diff;
+        if (gradient) {
+          double scale = -2.0 * diff * p * (1.0 - p) * k;
+          for (int j = 0; j < n; j++) {
+            sums[j + 1] += scale * features[base + j];
+          }
+        }
+      }
+      return sums;
+    }
+  }
+
+  static void decodeLegacy(ByteBuffer buf, int offset, Board board) {
+    board.clear();
+    for (int sq = 0; sq < 64; sq++) {
+      int code = buf.get(offset + sq);
+      if (code != 0) {
+        PlayerColor color = PlayerColor.values()[(code - 1) / 6];
+        PieceType type = PieceType.values()[(code - 1) % 6];
+        board.place(sq / 8, sq % 8, Piece.of(type, color));
+      }
+    }
+    board.setCastlingRights(buf.get(offset + 64));
+  }
+
+  /**
+   * Writes positions from quick capture-greedy self-play games. The games are weak, but their
+   * results correlate with material, which is enough to exercise the pipeline end to end.
+   */
+  static void generate(Path path, int games) throws IOException {
+    Random random = new Random();
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).flip();
+      channel.write(header);
+      long written = 0;
+      for (int g = 0; g < games; g++) {
+        List<Board> positions = new ArrayList<>();
+        int result = playGreedyGame(random, positions);
+        ByteBuffer out =
+            ByteBuffer.allocate(positions.size() * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (Board board : positions) {
+          PositionCodec.encode(board, result, out);
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+          channel.write(out);
+        }
+        written += positions.size();
+      }
+      System.out.printf("Wrote %,d positions from %d games to %s%n", written, games, path);
+    }
+  }
+
+  private static int playGreedyGame(Random random, List<Board> positions) {
+    Board board = new Board();
+    PlayerColor turn = PlayerColor.WHITE;
+    for (int ply = 0; ply < 300; ply++) {
+      List<Move> legal = board.generateLegalMoves(turn);
+      if (legal.isEmpty()) {
+        if (!board.isKingInCheck(turn)) return 1;
+        return turn == PlayerColor.WHITE ? 0 : 2;
+      }
+      if (board.isAutomaticDrawByInsufficientMaterial()) return 1;
+      Move chosen = legal.get(random.nextInt(legal.size()));
+      if (random.nextInt(10) < 8) {
+        int best = -1;
+        for (Move move : legal) {
+          Piece target = board.at(move.tr, move.tc);
+          int gain = target == null ? 0 : 6 - target.getType().ordinal();
+          if (gain > best || (gain == best && random.nextBoolean())) {
+            best = gain;
+            chosen = move;
+          }
+        }
+      }
+      if (ply >= 8) {
+        positions.add(board.copy());
+      }
+      board.applyMove(chosen);
+      turn = turn.opponent();
+    }
+    double material = ChessAI.classicalEvaluation(board, EvalWeights.DEFAULT);
+    return material > 2 ? 2 : material < -2 ? 0 : 1;
+  }
+}
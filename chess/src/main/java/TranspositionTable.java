@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Search results keyed by {@link Board#hash()}, which includes the side to move, kept off the
+ * Java heap so that tables of many gigabytes cost no GC time. The table is split into direct or
+ * memory-mapped buffers of at most 1 GB; foreign memory segments would lift that limit, but they
+ * are still a preview API on the Java 21 toolchain this build pins. When backed by a file, what
+ * one process learns is still there after a restart, and several engine processes on a host can
+ * share one file. Because they may have it mapped, the file is checked and set up under a file
+ * lock and never truncated: a file holding a table of another size or format is refused.
+ *
+ * <p>Buckets hold two 16-byte entries: one kept for the deepest result and one always replaced.
+ * Each entry is {@code key ^ data} followed by {@code data}, as in {@link EvalCache}, so a torn
+ * write from another thread or process reads as a miss. {@code data} packs the score from White's
+ * point of view, the best move, the depth and whether the score is exact or a bound. Scores depend
+ * on the evaluation and the search, so the file records a {@link #fingerprint} of the weights,
+ * network and search parameters, and one opened with a different fingerprint starts cold.
+ *
+ * <p>File layout: a 32-byte little-endian header (magic {@code "CTT1"}, version, bucket count,
+ * fingerprint, zero padding that keeps the buckets 32-byte aligned) followed by the buckets.
+ */
+public final class TranspositionTable implements AutoCloseable {
+  public static final int UPPER = 1;
+  public static final int LOWER = 2;
+  public static final int EXACT = 3;
+
+  static final int MAGIC = 0x31545443;
+  static final int VERSION = 2;
+  static final int HEADER_BYTES = 32;
+  private static final int BUCKET_BYTES = 32;
+  private static final int SEGMENT_SHIFT = 30;
+  private static final int BUCKETS_PER_SEGMENT_SHIFT = SEGMENT_SHIFT - 5;
+  private static final long DEFAULT_MEGABYTES = 64;
+
+  private static TranspositionTable startup;
+  private static boolean startupLoaded;
+
+  private final ByteBuffer[] segments;
+  private final long mask;
+  private final FileChannel channel;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private TranspositionTable(ByteBuffer[] segments, long buckets, FileChannel channel) {
+    this.segments = segments;
+    this.mask = buckets - 1;
+    this.channel = channel;
+  }
+
+  /** A table of about {@code megabytes} in direct memory, lost when the process exits. */
+  public static TranspositionTable allocate(long megabytes) {
+    long buckets = bucketsFor(megabytes);
+    ByteBuffer[] segments = new ByteBuffer[segmentCount(buckets)];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] =
+          ByteBuffer.allocateDirect((int) segmentBytes(buckets, i)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return new TranspositionTable(segments, buckets, null);
+  }
+
+  /**
+   * Maps a table of about {@code megabytes} backed by {@code path}, creating the file if it is
+   * empty. An existing table keeps its entries if it was written with the same {@code
+   * fingerprint} and is cleared otherwise. Throws IOException if the file holds anything but a
+   * table of this size.
+   */
+  public static TranspositionTable open(Path path, long megabytes, long fingerprint)
+      throws IOException {
+    long buckets = bucketsFor(megabytes);
+    long size = HEADER_BYTES + buckets * BUCKET_BYTES;
+    FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      FileLock lock = channel.lock();
+      try {
+        boolean cold = false;
+        if (channel.size() == 0) {
+          writeHeader(channel, buckets, fingerprint);
+          channel.write(ByteBuffer.allocate(1), size - 1);
+        } else {
+          ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+          channel.read(header, 0);
+          if (channel.size() != size
+              || header.getInt(0) != MAGIC
+              || header.getInt(4) != VERSION
+              || header.getLong(8) != buckets) {
+            throw new IOException(
+                path + " is not a " + megabytes + " MB table of version " + VERSION);
+          }
+          cold = header.getLong(16) != fingerprint;
+        }
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(buckets)];
+        for (int i = 0; i < segments.length; i++) {
+          long offset = HEADER_BYTES + ((long) i << SEGMENT_SHIFT);
+          segments[i] =
+              channel
+                  .map(FileChannel.MapMode.READ_WRITE, offset, segmentBytes(buckets, i))
+                  .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        TranspositionTable table = new TranspositionTable(segments, buckets, channel);
+        if (cold) {
+          table.clear();
+          writeHeader(channel, buckets, fingerprint);
+        }
+        return table;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private static void writeHeader(FileChannel channel, long buckets, long fingerprint)
+      throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putLong(buckets).putLong(fingerprint).clear();
+    channel.write(header, 0);
+  }
+
+  /**
+   * Identifies the evaluation and search behind a table's scores: the classical weights, the
+   * network ({@code null} when the classical evaluation is used) and the search parameters.
+   */
+  public static long fingerprint(NnueNetwork network, EvalWeights weights, SearchParams params) {
+    long h = network == null ? 0 : network.fingerprint();
+    h = h * 31 + Arrays.hashCode(weights.toArray());
+    return h * 31 + Arrays.hashCode(params.toArray());
+  }
+
+  /**
+   * The table shared by AIs created without an explicit one: {@code -Dchess.hash} megabytes
+   * (default 64, 0 for none), mapped from {@code -Dchess.hashfile} if that is set. Returns null
+   * when disabled; a file that cannot be used is reported and replaced by a table in memory.
+   */
+  public static synchronized TranspositionTable startup() {
+    if (!startupLoaded) {
+      startupLoaded = true;
+      long megabytes = Long.getLong("chess.hash", DEFAULT_MEGABYTES);
+      String file = System.getProperty("chess.hashfile");
+      if (megabytes > 0) {
+        if (file == null || file.isBlank()) {
+          startup = allocate(megabytes);
+        } else {
+          long fingerprint =
+              fingerprint(
+                  NnueNetwork.fromSystemProperty(), EvalWeights.startup(), SearchParams.startup());
+          try {
+            startup = open(Path.of(file), megabytes, fingerprint);
+          } catch (IOException ex) {
+            System.err.println("Not using transposition table " + file + ": " + ex.getMessage());
+            startup = allocate(megabytes);
+          }
+        }
+      }
+    }
+    return startup;
+  }
+
+  private static long bucketsFor(long megabytes) {
+    if (megabytes <= 0) throw new IllegalArgumentException("Size must be positive: " + megabytes);
+    return Long.highestOneBit(Math.max(1, (megabytes << 20) / BUCKET_BYTES));
+  }
+
+  private static int segmentCount(long buckets) {
+    return (int) ((buckets + (1L << BUCKETS_PER_SEGMENT_SHIFT) - 1) >>> BUCKETS_PER_SEGMENT_SHIFT);
+  }
+
+  private static long segmentBytes(long buckets, int segment) {
+    long first = (long) segment << BUCKETS_PER_SEGMENT_SHIFT;
+    return Math.min(buckets - first, 1L << BUCKETS_PER_SEGMENT_SHIFT) * BUCKET_BYTES;
+  }
+
+  /** Returns the packed entry for {@code key}, or 0 on a miss; see the static accessors. */
+  public long probe(long key) {
+    long bucket = key & mask;
+    ByteBuffer segment = segments[(int) (bucket >>> BUCKETS_PER_SEGMENT_SHIFT)];
+    int offset = (int) (bucket & ((1L << BUCKETS_PER_SEGMENT_SHIFT) - 1)) * BUCKET_BYTES;
+    for (int slot = offset; slot < offset + BUCKET_BYTES; slot += 16) {
+      long data = segment.getLong(slot + 8);
+      if (data != 0 && (segment.getLong(slot) ^ data) == key) {
+        hits.increment();
+        return data;
+      }
+    }
+    misses.increment();
+    return 0L;
+  }
+
+  /**
+   * Stores a search result. {@code bound} is {@link #EXACT}, {@link #LOWER} or {@link #UPPER};
+   * {@code best} may be null.
+   */
+  public void store(long key, int depth, int bound, double whiteScore, Move best) {
+    long data =
+        Integer.toUnsignedLong(Float.floatToRawIntBits((float) whiteScore))
+            | (best == null ? 0L : (1L << 12 | best.encode()) << 32)
+            | (long) Math.clamp(depth, 0, 255) << 45
+            | (long) bound << 53;
+    long bucket = key & mask;
+    ByteBuffer segment = segments[(int) (bucket >>> BUCKETS_PER_SEGMENT_SHIFT)];
+    int slot = (int) (bucket & ((1L << BUCKETS_PER_SEGMENT_SHIFT) - 1)) * BUCKET_BYTES;
+    long old = segment.getLong(slot + 8);
+    boolean sameKey = (segment.getLong(slot) ^ old) == key;
+    if (old != 0 && !sameKey && depth(old) > depth) {
+      // keep the deeper result and use the always-replace entry
+      slot += 16;
+    }
+    segment.putLong(slot, key ^ data);
+    segment.putLong(slot + 8, data);
+  }
+
+  public static double score(long entry) {
+    return Float.intBitsToFloat((int) entry);
+  }
+
+  /** The best move's {@link Move#encode} code, or -1 if none was stored. */
+  public static int move(long entry) {
+    return (entry & 1L << 44) == 0 ? -1 : (int) (entry >>> 32) & 0xFFF;
+  }
+
+  public static int depth(long entry) {
+    return (int) (entry >>> 45) & 0xFF;
+  }
+
+  public static int bound(long entry) {
+    return (int) (entry >>> 53) & 3;
+  }
+
+  public void clear() {
+    for (ByteBuffer segment : segments) {
+      for (int i = 0; i < segment.capacity(); i += 8) segment.putLong(i, 0L);
+    }
+    hits.reset();
+    misses.reset();
+  }
+
+  public long capacity() {
+    return (mask + 1) * 2;
+  }
+
+  public double hitRate() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0.0 : (double) h / total;
+  }
+
+  /** Writes a file-backed table to disk; the mapping itself stays valid until collected. */
+  @Override
+  public void close() throws IOException {
+    if (channel == null) return;
+    for (ByteBuffer segment : segments) ((MappedByteBuffer) segment).force();
+    channel.close();
+  }
+}
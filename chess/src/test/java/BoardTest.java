@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BoardTest {
+  private static final int GAMES = 200;
+  private static final int MAX_PLIES = 300;
+
+  /** What makeMove and unmakeMove must leave as they found it. */
+  private record Snapshot(String fen, long hash, long materialKey, int repetitionDistance) {
+    static Snapshot of(Board board) {
+      return new Snapshot(
+          board.toFen(), board.hash(), board.materialKey(), board.repetitionDistance());
+    }
+  }
+
+  @Test
+  void unmakeRestoresEveryPositionOfRandomGames() {
+    Random random = new Random(20240611);
+    int castles = 0;
+    int promotions = 0;
+    int captures = 0;
+    for (int game = 0; game < GAMES; game++) {
+      Board board = new Board();
+      List<Board.Undo> undos = new ArrayList<>();
+      List<Snapshot> before = new ArrayList<>();
+      for (int ply = 0; ply < MAX_PLIES; ply++) {
+        List<Move> moves = board.generateLegalMoves(board.sideToMove());
+        if (moves.isEmpty()) break;
+        Snapshot snapshot = Snapshot.of(board);
+
+        // every legal move is taken back exactly
+        for (Move move : moves) {
+          Board.Undo undo = board.makeMove(move);
+          board.unmakeMove(undo);
+          assertEquals(snapshot, Snapshot.of(board), () -> "after " + describe(move));
+        }
+
+        Move move = pick(board, moves, random);
+        if (isCastle(board, move)) castles++;
+        if (isPromotion(board, move)) promotions++;
+        if (isCapture(board, move)) captures++;
+        before.add(snapshot);
+        undos.add(board.makeMove(move));
+      }
+
+      // and so is the whole game, back to the start
+      while (!undos.isEmpty()) {
+        board.unmakeMove(undos.removeLast());
+        assertEquals(before.removeLast(), Snapshot.of(board), "game " + game);
+      }
+    }
+    assertTrue(castles > 0, "no castling was played");
+    assertTrue(promotions > 0, "no promotion was played");
+    assertTrue(captures > 0, "no capture was played");
+  }
+
+  /** A random move, preferring castling and promotions so that every game is likely to hold one. */
+  private static Move pick(Board board, List<Move> moves, Random random) {
+    for (Move move : moves) {
+      if ((isCastle(board, move) || isPromotion(board, move)) && random.nextBoolean()) {
+        return move;
+      }
+    }
+    return moves.get(random.nextInt(moves.size()));
+  }
+
+  private static boolean isCastle(Board board, Move move) {
+    Piece piece = board.at(move.fr, move.fc);
+    return piece.getType() == PieceType.KING && Math.abs(move.tc - move.fc) == 2;
+  }
+
+  private static boolean isPromotion(Board board, Move move) {
+    Piece piece = board.at(move.fr, move.fc);
+    return piece.getType() == PieceType.PAWN && (move.tr == 0 || move.tr == 7);
+  }
+
+  private static boolean isCapture(Board board, Move move) {
+    return board.at(move.tr, move.tc) != null;
+  }
+
+  private static String describe(Move move) {
+    return "" + (char) ('a' + move.fc) + (8 - move.fr) + (char) ('a' + move.tc) + (8 - move.tr);
+  }
+}
@@ -0,0 +1,53 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GameLogTest {
+  /** More moves than fit in one mapped write window, so the game spans two. */
+  private static final int LONG_GAME = 700_000;
+
+  @TempDir Path dir;
+
+  @Test
+  void endOfGamePolicyKeepsGamesThatSpanWindows() throws IOException, InterruptedException {
+    Path path = dir.resolve("games.log");
+    // knights out and back
+    Move[] moves = {
+      new Move(7, 6, 5, 5), new Move(0, 6, 2, 5), new Move(5, 5, 7, 6), new Move(2, 5, 0, 6)
+    };
+    try (GameLog log = GameLog.open(path, GameLog.FlushPolicy.END_OF_GAME)) {
+      log.startGame(null);
+      for (int i = 0; i < LONG_GAME; i++) log.appendMove(moves[i % moves.length]);
+      log.endGame(PgnReader.DRAW);
+      log.startGame(null);
+      log.appendMove(moves[0]);
+      log.endGame(PgnReader.WHITE_WINS);
+    }
+
+    try (GameLog log = GameLog.open(path, GameLog.FlushPolicy.END_OF_GAME)) {
+      assertNull(log.unfinishedGame());
+    }
+    List<String> games = Collections.synchronizedList(new ArrayList<>());
+    GameLog.readParallel(
+        path,
+        1,
+        () ->
+            game -> {
+              MoveHistory history = game.moves();
+              for (int i = 0; i < history.size(); i++) {
+                assertEquals(moves[i % moves.length].encode(), history.code(i));
+              }
+              games.add(history.size() + " " + game.result() + " " + game.finished());
+            });
+    assertEquals(
+        List.of(LONG_GAME + " " + PgnReader.DRAW + " true", "1 " + PgnReader.WHITE_WINS + " true"),
+        games);
+  }
+}
@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PositionCodecTest {
+  private static final int GAMES = 50;
+  private static final int MAX_PLIES = 200;
+
+  @TempDir Path dir;
+
+  @Test
+  void decodeRestoresEncodedPositions() {
+    List<Board> positions = randomPositions(new Random(7));
+    ByteBuffer buf =
+        ByteBuffer.allocate(positions.size() * PositionCodec.RECORD_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < positions.size(); i++) {
+      PositionCodec.encode(positions.get(i), i - 1000, buf);
+    }
+    Board decoded = new Board();
+    for (int i = 0; i < positions.size(); i++) {
+      Board board = positions.get(i);
+      int offset = i * PositionCodec.RECORD_BYTES;
+      PositionCodec.decode(buf, offset, decoded);
+      assertEquals(board.toFen(), decoded.toFen());
+      assertEquals(board.hash(), decoded.hash(), board::toFen);
+      assertEquals(board.materialKey(), decoded.materialKey(), board::toFen);
+      assertEquals(i - 1000, PositionCodec.payload(buf, offset));
+    }
+  }
+
+  @Test
+  void convertTexelKeepsPlacementCastlingAndResult() throws IOException {
+    List<Board> positions = randomPositions(new Random(11));
+    ByteBuffer legacy =
+        ByteBuffer.allocate(4 + positions.size() * TexelTuner.LEGACY_RECORD_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    legacy.putInt(TexelTuner.LEGACY_MAGIC);
+    for (int i = 0; i < positions.size(); i++) {
+      Board board = positions.get(i);
+      for (int sq = 0; sq < 64; sq++) {
+        Piece piece = board.at(sq / 8, sq % 8);
+        int code =
+            piece == null ? 0 : 1 + piece.getColor().ordinal() * 6 + piece.getType().ordinal();
+        legacy.put((byte) code);
+      }
+      legacy.put((byte) board.castlingRights());
+      legacy.put((byte) (i % 3 - 1));
+    }
+    Path from = dir.resolve("old.bin");
+    Path to = dir.resolve("new.bin");
+    Files.write(from, legacy.array());
+
+    assertEquals(positions.size(), PositionCodec.convertTexel(from, to));
+
+    ByteBuffer converted = ByteBuffer.wrap(Files.readAllBytes(to)).order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(TexelTuner.MAGIC, converted.getInt(0));
+    assertEquals(
+        TexelTuner.HEADER_BYTES + positions.size() * PositionCodec.RECORD_BYTES,
+        converted.capacity());
+    Board decoded = new Board();
+    for (int i = 0; i < positions.size(); i++) {
+      int offset = TexelTuner.HEADER_BYTES + i * PositionCodec.RECORD_BYTES;
+      PositionCodec.decode(converted, offset, decoded);
+      String[] expected = positions.get(i).toFen().split(" ");
+      String[] actual = decoded.toFen().split(" ");
+      assertEquals(expected[0], actual[0]);
+      assertEquals(expected[2], actual[2]);
+      assertEquals(i % 3 - 1, PositionCodec.payload(converted, offset));
+    }
+  }
+
+  /** Every position of seeded random legal games, as separate boards. */
+  private static List<Board> randomPositions(Random random) {
+    List<Board> positions = new ArrayList<>();
+    for (int game = 0; game < GAMES; game++) {
+      Board board = new Board();
+      for (int ply = 0; ply < MAX_PLIES; ply++) {
+        positions.add(board.copy());
+        List<Move> moves = board.generateLegalMoves(board.sideToMove());
+        if (moves.isEmpty()) break;
+        board.applyMove(moves.get(random.nextInt(moves.size())));
+      }
+    }
+    return positions;
+  }
+}
@@ -0,0 +1,34 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class StaticExchangeTest {
+  @ParameterizedTest(name = "{0}: {2}")
+  @CsvSource(
+      delimiter = '|',
+      textBlock =
+          """
+          undefended pawn              | 4k3/8/8/3p4/8/8/8/3RK3 w - - 0 1        | d1d5 |  1
+          queen takes pawn-defended    | 4k3/8/2p5/3p4/8/8/8/3QK3 w - - 0 1      | d1d5 | -8
+          knight trade                 | 4k3/8/2p5/3n4/8/4N3/8/4K3 w - - 0 1     | e3d5 |  0
+          rook takes rook-defended     | 3r2k1/8/8/3p4/8/8/8/3RK3 w - - 0 1      | d1d5 | -4
+          rook battery x-ray           | 3r2k1/8/8/3p4/8/8/3R4/3RK3 w - - 0 1    | d2d5 |  1
+          queen behind rook x-ray      | 3r2k1/8/8/3p4/8/8/3R4/3QK3 w - - 0 1    | d2d5 |  1
+          batteries on both sides      | 3r2k1/3r4/8/3p4/8/8/3R4/3RK3 w - - 0 1  | d2d5 | -4
+          bishop behind queen x-ray    | 4k3/8/2p5/3p4/8/8/6Q1/4K2B w - - 0 1    | g2d5 | -7
+          promotion capture            | r3k3/1P6/8/8/8/8/8/4K3 w - - 0 1        | b7a8 | 13
+          defended promotion capture   | r3k3/1P6/1n6/8/8/8/8/4K3 w - - 0 1      | b7a8 |  4
+          quiet promotion              | 4k3/1P6/8/8/8/8/8/4K3 w - - 0 1         | b7b8 |  8
+          black captures               | 4k3/8/8/8/3P4/8/8/3qK3 b - - 0 1        | d1d4 |  1
+          """)
+  void staticExchange(String name, String fen, String move, int expected) {
+    Board board = Board.fromFen(fen);
+    assertEquals(expected, board.staticExchange(parse(move)));
+  }
+
+  private static Move parse(String move) {
+    return new Move(
+        '8' - move.charAt(1), move.charAt(0) - 'a', '8' - move.charAt(3), move.charAt(2) - 'a');
+  }
+}